@@ -0,0 +1,123 @@
+package io.sev.loop.uring;
+
+import static io.sev.util.path.PathUtil.path;
+import static io.sev.util.unix.Macros.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.util.unix.UnixException;
+
+/*
+ * one full scan of a 256MB file with FileScanner, chunks of 128KB, against the number
+ * of reads kept in flight. the consumer releases every chunk right away, so this is
+ * the scanner's throughput alone. "direct" opens the file with O_DIRECT, which is what
+ * to compare against fio with the same queue depth:
+ *
+ *   fio --name=scan --rw=read --bs=128k --size=256m --ioengine=io_uring --direct=1 --iodepth=16
+ *
+ * without O_DIRECT the file is scanned from the page cache after the first iteration.
+ * the file is made in -Dsev.scan.dir, default the working directory, which has to
+ * support O_DIRECT.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileScanBenchmark {
+
+    private static final long FILE_SIZE = 256L * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 128 * 1024;
+
+    @Param({"1", "4", "16", "32"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private SegmentAllocator allocator = Native.callocator();
+
+    private Path file;
+
+    private UringLoop loop;
+
+    private int fd;
+
+    private int end;
+
+    @Setup
+    public void setup() throws IOException, UnixException {
+        file = Files.createTempFile(Path.of(System.getProperty("sev.scan.dir", ".")), "sev", "scan");
+        try(RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            byte[] block = new byte[1024 * 1024];
+            for(int i = 0; i < block.length; i++) {
+                block[i] = (byte) i;
+            }
+            for(long written = 0L; written < FILE_SIZE; written += block.length) {
+                raf.write(block);
+            }
+        }
+        loop = UringLoop.init();
+        fd = -1;
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.OpenAt().path(path(file, allocator)).flags(O_RDONLY | O_CLOEXEC | (direct ? O_DIRECT : 0)))
+                        .callback((ctx, l, completion, result) -> {
+                            fd = result;
+                            return false;
+                        }));
+        loop.runAll();
+        if(fd < 0) {
+            throw new IllegalStateException("open failed: " + fd);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Close(fd))
+                        .callback((ctx, l, completion, result) -> false));
+        loop.runAll();
+        loop.deinit();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public long scan() throws UnixException {
+        FileScanner scanner = new FileScanner(loop, fd, CHUNK_SIZE, depth).start(null, (ctx, l, s, offset, chunk, result) -> {
+            if(result > 0) {
+                s.release(chunk);
+            } else {
+                end = result;
+            }
+        });
+        loop.runAll();
+        scanner.close();
+        if(end != 0 || scanner.bytes() != FILE_SIZE) {
+            throw new IllegalStateException("scan failed: " + end);
+        }
+        return scanner.bytes();
+    }
+
+}
@@ -0,0 +1,179 @@
+package io.sev.loop.uring;
+
+import static io.sev.socket.Socket.*;
+import static io.sev.util.unix.Macros.*;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sev.Native;
+import io.sev.loop.Callback;
+import io.sev.loop.Operation;
+import io.sev.util.inet.InetUtil;
+import io.sev.util.unix.UnixException;
+
+/*
+ * time to push size bytes through a loopback tcp connection and get the send buffer
+ * back, with Operation.Send against Operation.SendZc. a zero-copy send only counts as
+ * done once its notification arrived, which is when the buffer could be reused.
+ * the receiving side is the same for both and drains into one large buffer.
+ *
+ * on loopback the kernel copies zero-copy data when it is delivered locally, so the
+ * size where SendZc starts to win here is an upper bound of what a real nic shows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendZcBenchmark {
+
+    private static final int PORT = 8097;
+
+    @Param({"4096", "16384", "65536", "262144", "1048576", "4194304"})
+    public int size;
+
+    private SegmentAllocator allocator = Native.callocator();
+
+    private UringLoop loop;
+
+    private int serverFd;
+
+    private int clientFd;
+
+    private int acceptedFd;
+
+    private MemorySegment sendBuffer;
+
+    private MemorySegment recvBuffer;
+
+    private int sent;
+
+    private int received;
+
+    private UringCompletion sendCompletion;
+
+    private UringCompletion recvCompletion;
+
+    private Callback<UringLoop, UringCompletion> sendZcCallback;
+
+    @Setup
+    public void setup() throws UnixException, IOException {
+        MemorySegment addr = InetUtil.sockAddrInet4((Inet4Address) InetAddress.getByName("127.0.0.1"), PORT, allocator);
+        serverFd = socket(AF_INET, SOCK_STREAM | SOCK_CLOEXEC, 0);
+        setSockOpt(serverFd, SOL_SOCKET, SO_REUSEADDR, 1);
+        bind(serverFd, addr, SOCKADDR_IN_SIZE);
+        listen(serverFd, 1);
+        clientFd = socket(AF_INET, SOCK_STREAM | SOCK_CLOEXEC, 0);
+        connect(clientFd, addr, SOCKADDR_IN_SIZE);
+
+        loop = UringLoop.init();
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Accept().fd(serverFd))
+                        .callback((ctx, l, completion, result) -> {
+                            acceptedFd = result;
+                            return false;
+                        }));
+        loop.runAll();
+        if(acceptedFd < 0) {
+            throw new IllegalStateException("accept failed: " + acceptedFd);
+        }
+
+        sendBuffer = allocator.allocate(size);
+        sendBuffer.fill((byte) 1);
+        recvBuffer = allocator.allocate(size);
+
+        sendCompletion = new UringCompletion()
+                .operation(new Operation.Send().fd(clientFd))
+                .callback((ctx, l, completion, result) -> {
+                    sent += checked(result);
+                    ((Operation.Send) completion.operation).buf(sendBuffer.asSlice(sent)).len(size - sent);
+                    return sent < size;
+                });
+        // a short zero-copy send keeps its completion until the notification, the rest goes out as a new one
+        sendZcCallback = (ctx, l, completion, result) -> {
+            if(completion.notification()) {
+                return false;
+            }
+            sent += checked(result);
+            if(sent < size) {
+                l.enqueue(sendZc(sent));
+            }
+            return false;
+        };
+        recvCompletion = new UringCompletion()
+                .operation(new Operation.Recv().fd(acceptedFd))
+                .callback((ctx, l, completion, result) -> {
+                    received += checked(result);
+                    ((Operation.Recv) completion.operation).buf(recvBuffer.asSlice(received)).len(size - received);
+                    return received < size;
+                });
+    }
+
+    @TearDown
+    public void tearDown() {
+        loop.deinit();
+        close(acceptedFd);
+        close(clientFd);
+        close(serverFd);
+        Native.free(sendBuffer);
+        Native.free(recvBuffer);
+    }
+
+    private static int checked(int result) {
+        if(result <= 0) {
+            throw new IllegalStateException("send or recv failed: " + result);
+        }
+        return result;
+    }
+
+    private UringCompletion sendZc(int offset) {
+        return new UringCompletion()
+                .operation(new Operation.SendZc().fd(clientFd).buf(sendBuffer.asSlice(offset)).len(size - offset))
+                .callback(sendZcCallback);
+    }
+
+    private void startRecv() {
+        received = 0;
+        ((Operation.Recv) recvCompletion.operation).buf(recvBuffer).len(size);
+        loop.enqueue(recvCompletion);
+    }
+
+    @Benchmark
+    public int send() {
+        sent = 0;
+        ((Operation.Send) sendCompletion.operation).buf(sendBuffer).len(size);
+        loop.enqueue(sendCompletion);
+        startRecv();
+        loop.runAll();
+        return received;
+    }
+
+    @Benchmark
+    public int sendZc() {
+        sent = 0;
+        loop.enqueue(sendZc(0));
+        startRecv();
+        loop.runAll();
+        return received;
+    }
+
+}
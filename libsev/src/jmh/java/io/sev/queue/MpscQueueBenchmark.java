@@ -0,0 +1,113 @@
+package io.sev.queue;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * per-offer cost with 1 to 16 producers and one consumer thread draining in the
+ * background, which is how UringLoop.execute() is used. "mpsc" is the intrusive
+ * MpscQueue the loop uses, "clq" the ConcurrentLinkedQueue UringLoopGroup used before,
+ * which allocates a node per offer and retries its tail CAS under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpscQueueBenchmark {
+
+    private static final class Node extends IntrusiveQueue.Element<Node> {
+    }
+
+    @Param({"mpsc", "clq"})
+    public String queue;
+
+    private MpscQueue<Node> mpsc;
+
+    private ConcurrentLinkedQueue<Node> clq;
+
+    private boolean useMpsc;
+
+    private Thread consumer;
+
+    private volatile boolean running;
+
+    @Setup
+    public void setup() {
+        mpsc = new MpscQueue<>();
+        clq = new ConcurrentLinkedQueue<>();
+        running = true;
+        useMpsc = queue.equals("mpsc");
+        consumer = new Thread(() -> {
+            while(running) {
+                Node node = useMpsc ? mpsc.poll() : clq.poll();
+                if(node == null) {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "mpsc-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        consumer.join();
+    }
+
+    private void offer() {
+        // a fresh element per offer, like a task handed to a loop
+        if(useMpsc) {
+            mpsc.offer(new Node());
+        } else {
+            clq.offer(new Node());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void offer1() {
+        offer();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void offer2() {
+        offer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void offer4() {
+        offer();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void offer8() {
+        offer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void offer16() {
+        offer();
+    }
+
+}
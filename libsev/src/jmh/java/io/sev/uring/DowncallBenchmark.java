@@ -0,0 +1,90 @@
+package io.sev.uring;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sev.Native;
+import io.sev.util.unix.Macros;
+import io.sev.util.unix.UnixException;
+
+/*
+ * per-call cost of the FFM bindings. the *Generic benchmarks go through
+ * invokeWithArguments with boxed arguments, which is how every binding used
+ * to be called; the *Exact benchmarks go through the public API, which uses
+ * invokeExact (and Linker.Option.critical where the call is short).
+ * prepNop measures the pure java sqe encoder, which replaced the sev_uring_prep*
+ * downcalls entirely.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DowncallBenchmark {
+
+    private MethodHandle clockGetTimeGeneric;
+
+    private Arena arena;
+
+    private IoUring ring;
+
+    private long sqe;
+
+    private MemorySegment ts;
+
+    @Setup
+    public void setup() throws UnixException {
+        arena = Arena.ofConfined();
+        ring = IoUring.init(arena);
+        sqe = ring.getSqe();
+        ts = arena.allocate(16L);
+
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup lookup = SymbolLookup.loaderLookup();
+        clockGetTimeGeneric = linker.downcallHandle(lookup.findOrThrow("sev_clockGetTime"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ring.queueExit();
+        arena.close();
+    }
+
+    @Benchmark
+    public void prepNop() {
+        IoUring.prepNop(sqe);
+        IoUring.sqeSetData64(sqe, 1L);
+    }
+
+    @Benchmark
+    public int clockGetTimeGeneric() throws Throwable {
+        return (int) clockGetTimeGeneric.invokeWithArguments(Macros.CLOCK_MONOTONIC, ts);
+    }
+
+    @Benchmark
+    public void clockGetTimeExact() throws UnixException {
+        Native.clockGetTime(Macros.CLOCK_MONOTONIC, ts);
+    }
+
+}
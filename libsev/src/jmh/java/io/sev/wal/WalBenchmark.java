@@ -0,0 +1,145 @@
+package io.sev.wal;
+
+import static io.sev.util.path.PathUtil.path;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.loop.uring.UringCompletion;
+import io.sev.loop.uring.UringLoop;
+import io.sev.util.unix.UnixException;
+
+/*
+ * group commit: batch records of 128 bytes appended together and waited on until all
+ * are durable, which is one writev and one fdatasync. "commit" samples the time of a
+ * whole batch, so its p99 is the commit latency a record sees, "records" counts durable
+ * records per second.
+ *
+ * the log goes to -Dsev.wal.dir, default the working directory, which has to be on a
+ * filesystem that supports O_DIRECT (not tmpfs). the numbers are mostly the device's
+ * flush latency, on a drive with a volatile write cache fdatasync is far slower than on
+ * one with power loss protection.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalBenchmark {
+
+    private static final int RECORD_SIZE = 128;
+
+    @Param({"1", "8", "64", "256"})
+    public int batch;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Records {
+        public long records;
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0L;
+        }
+    }
+
+    private SegmentAllocator allocator = Native.callocator();
+
+    private Path dir;
+
+    private UringLoop loop;
+
+    private int fd;
+
+    private WriteAheadLog wal;
+
+    private MemorySegment record;
+
+    private int durable;
+
+    private WriteAheadLog.DurableCallback callback;
+
+    @Setup
+    public void setup() throws IOException, UnixException {
+        dir = Files.createTempDirectory(Path.of(System.getProperty("sev.wal.dir", ".")), "wal");
+        loop = UringLoop.init();
+        fd = -1;
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.OpenAt().path(path(dir.resolve("log"), allocator)).flags(WriteAheadLog.OPEN_FLAGS).mode(0600))
+                        .callback((ctx, l, completion, result) -> {
+                            fd = result;
+                            return false;
+                        }));
+        loop.runAll();
+        if(fd < 0) {
+            throw new IllegalStateException("open failed: " + fd);
+        }
+        wal = new WriteAheadLog(loop, fd, 0L, 4096, 256 * 1024, 16);
+        record = allocator.allocate(RECORD_SIZE);
+        record.fill((byte) 7);
+        callback = (ctx, l, lsn, result) -> {
+            if(result != 0) {
+                throw new IllegalStateException("commit failed: " + result);
+            }
+            durable++;
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        wal.deinit();
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Close(fd))
+                        .callback((ctx, l, completion, result) -> false));
+        loop.runAll();
+        loop.deinit();
+        Native.free(record);
+        Files.delete(dir.resolve("log"));
+        Files.delete(dir);
+    }
+
+    private int appendBatch() {
+        durable = 0;
+        for(int i = 0; i < batch; i++) {
+            wal.append(record, null, callback);
+        }
+        loop.runAll();
+        return durable;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int commit() {
+        return appendBatch();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int records(Records counters) {
+        int n = appendBatch();
+        counters.records += n;
+        return n;
+    }
+
+}
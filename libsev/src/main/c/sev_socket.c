@@ -1,3 +1,5 @@
+#define _GNU_SOURCE
+
 #include <stdlib.h>
 #include <sys/socket.h>
 #include <arpa/inet.h>
@@ -6,6 +8,7 @@
 #include <errno.h>
 #include <string.h>
 #include <stdbool.h>
+#include <fcntl.h>
 
 #include "sev_socket.h"
 
@@ -91,3 +94,19 @@ int sev_socket_setSockOpt(int fd, int level, int optname, int optval) {
     }
     return 0;
 }
+
+int sev_socket_pipe(int *fds, int flags) {
+    int res = pipe2(fds, flags);
+    if(res == -1) {
+        return -errno;
+    }
+    return 0;
+}
+
+int sev_socket_setPipeSize(int fd, int size) {
+    int res = fcntl(fd, F_SETPIPE_SZ, size);
+    if(res == -1) {
+        return -errno;
+    }
+    return res;
+}
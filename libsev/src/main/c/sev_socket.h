@@ -22,4 +22,9 @@ int sev_socket_getSockOpt(int fd, int level, int optname);
 
 int sev_socket_setSockOpt(int fd, int level, int optname, int optval);
 
+int sev_socket_pipe(int *fds, int flags);
+
+// returns the resulting capacity, which the kernel rounds up
+int sev_socket_setPipeSize(int fd, int size);
+
 #endif
\ No newline at end of file
@@ -9,47 +9,35 @@
 
 #include "liburing.h"
 
-int sev_uring_queueInit(unsigned entries, long ring, unsigned flags);
+int sev_uring_queueInitParams(unsigned entries, long ring, long params);
 
-long sev_uring_getSqe(long ring);
-
-void sev_uring_sqeSetData64(long sqe, long data);
-
-void sev_uring_sqeSetData(long sqe, long data);
-
-void sev_uring_sqeSetFlags(long sqe, unsigned flags);
-
-void sev_uring_prepNop(long sqe);
-
-void sev_uring_prepAccept(long sqe, int sockfd, struct sockaddr *addr, socklen_t *addrlen, int flags, bool multishot);
+int sev_uring_submit(long ring);
 
-void sev_uring_prepConnect(long sqe, int fd, const struct sockaddr *addr, socklen_t addrlen);
+int sev_uring_submitAndWait(long ring, unsigned wait_nr);
 
-void sev_uring_prepClose(long sqe, int fd);
+int sev_uring_enter(long ring, unsigned to_submit, unsigned min_complete, unsigned flags);
 
-void sev_uring_prepShutdown(long sqe, int fd, int how);
+long sev_uring_setupBufRing(long ring, unsigned nentries, int bgid, unsigned flags);
 
-void sev_uring_prepRead(long sqe, int fd, void *buf, unsigned nbytes, unsigned long long offset);
+int sev_uring_freeBufRing(long ring, long br, unsigned nentries, int bgid);
 
-void sev_uring_prepWrite(long sqe, int fd, void *buf, unsigned nbytes, unsigned long long offset);
+int sev_uring_registerBuffers(long ring, long iovecs, unsigned nr_iovecs);
 
-void sev_uring_prepRecv(long sqe , int sockfd, void *buf, size_t len, int flags);
+int sev_uring_registerBuffersSparse(long ring, unsigned nr);
 
-void sev_uring_prepSend(long sqe , int sockfd, void *buf, size_t len, int flags);
+int sev_uring_registerBuffersUpdate(long ring, unsigned off, long iovecs, unsigned nr);
 
-void sev_uring_prepTimeout(long sqe, struct __kernel_timespec *ts, unsigned count, unsigned flags);
+int sev_uring_unregisterBuffers(long ring);
 
-void sev_uring_prepPollAdd(long sqe, int fd, unsigned poll_mask);
+int sev_uring_registerFiles(long ring, long fds, unsigned nr_files);
 
-void sev_uring_prepCancel64(long sqe, long user_data, int flags);
+int sev_uring_registerFilesSparse(long ring, unsigned nr_files);
 
-void sev_uring_prepCancel(long sqe, long user_data, int flags);
+int sev_uring_registerFilesUpdate(long ring, unsigned off, long fds, unsigned nr_files);
 
-int sev_uring_submit(long ring);
-
-int sev_uring_submitAndWait(long ring, unsigned wait_nr);
+int sev_uring_unregisterFiles(long ring);
 
-int sev_uring_copyCqes(long ring, struct io_uring_cqe *cqes, uint32_t cqes_len, uint32_t wait_nr);
+int sev_uring_registerFileAllocRange(long ring, unsigned off, unsigned len);
 
 void sev_uring_queueExit(long ring);
 
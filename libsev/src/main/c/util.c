@@ -3,11 +3,26 @@
 #include <time.h>
 #include <errno.h>
 #include <stdlib.h>
+#include <sched.h>
+#include <stdint.h>
+#include <unistd.h>
+#include <string.h>
+#include <sys/eventfd.h>
 
 long sev_calloc(long nmemb, long size) {
     return (long) calloc(nmemb, size);
 }
 
+// zeroed memory aligned to alignment, a power of two multiple of sizeof(void *), freed with sev_free
+long sev_alignedCalloc(long alignment, long size) {
+    void *ptr;
+    if(posix_memalign(&ptr, alignment, size) != 0) {
+        return 0;
+    }
+    memset(ptr, 0, size);
+    return (long) ptr;
+}
+
 void sev_free(long ptr_long) {
     free((void *) ptr_long);
 }
@@ -18,4 +33,31 @@ int sev_clockGetTime(clockid_t clockid, struct timespec *tp) {
         return -errno;
     }
     return 0;
-}
\ No newline at end of file
+}
+
+// pins the calling thread to cpu
+int sev_setAffinity(int cpu) {
+    cpu_set_t set;
+    CPU_ZERO(&set);
+    CPU_SET(cpu, &set);
+    if(sched_setaffinity(0, sizeof(set), &set) == -1) {
+        return -errno;
+    }
+    return 0;
+}
+
+int sev_eventfd(unsigned initval, int flags) {
+    int fd = eventfd(initval, flags);
+    if(fd == -1) {
+        return -errno;
+    }
+    return fd;
+}
+
+int sev_eventfdWrite(int fd, long value) {
+    uint64_t v = (uint64_t) value;
+    if(write(fd, &v, sizeof(v)) == -1) {
+        return -errno;
+    }
+    return 0;
+}
@@ -20,6 +20,14 @@ public class Native {
 
     private static final MethodHandle clockGetTimeHandle;
 
+    private static final MethodHandle setAffinityHandle;
+
+    private static final MethodHandle alignedCallocHandle;
+
+    private static final MethodHandle eventfdHandle;
+
+    private static final MethodHandle eventfdWriteHandle;
+
     private static SegmentAllocator callocator = null;
 
     static {
@@ -37,47 +45,112 @@ public class Native {
 
         MemorySegment clockGetTimeSegment = lookup.findOrThrow("sev_clockGetTime");
         FunctionDescriptor clockGetTimeDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS);
-        clockGetTimeHandle = linker.downcallHandle(clockGetTimeSegment, clockGetTimeDescriptor);
-    }
+        clockGetTimeHandle = linker.downcallHandle(clockGetTimeSegment, clockGetTimeDescriptor, Linker.Option.critical(false));
 
-    private static Object invokeWithArgumentsUnchecked(MethodHandle handle, Object... args) {
-        Object result = null;
-        try {
-            result = handle.invokeWithArguments(args);
-            return result;
-        } catch(Throwable t) {
-            throw new RuntimeException(t);
-        }
+        MemorySegment setAffinitySegment = lookup.findOrThrow("sev_setAffinity");
+        FunctionDescriptor setAffinityDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT);
+        setAffinityHandle = linker.downcallHandle(setAffinitySegment, setAffinityDescriptor);
+
+        MemorySegment alignedCallocSegment = lookup.findOrThrow("sev_alignedCalloc");
+        FunctionDescriptor alignedCallocDescriptor = FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_LONG);
+        alignedCallocHandle = linker.downcallHandle(alignedCallocSegment, alignedCallocDescriptor);
+
+        MemorySegment eventfdSegment = lookup.findOrThrow("sev_eventfd");
+        FunctionDescriptor eventfdDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT);
+        eventfdHandle = linker.downcallHandle(eventfdSegment, eventfdDescriptor);
+
+        MemorySegment eventfdWriteSegment = lookup.findOrThrow("sev_eventfdWrite");
+        FunctionDescriptor eventfdWriteDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG);
+        eventfdWriteHandle = linker.downcallHandle(eventfdWriteSegment, eventfdWriteDescriptor);
     }
 
-    private static void invokeWithArgumentsVoidUnchecked(MethodHandle handle, Object... args) {
+    public static long calloc(long nmemb, long size) {
         try {
-            handle.invokeWithArguments(args);
+            return (long) callocHandle.invokeExact(nmemb, size);
         } catch(Throwable t) {
             throw new RuntimeException(t);
         }
     }
 
-    public static long calloc(long nmemb, long size) {
-        return (long) invokeWithArgumentsUnchecked(callocHandle, nmemb, size);
-    }
-
     public static MemorySegment callocSegment(long nmemb, long size) {
         long address = calloc(nmemb, size);
         if(address == 0L) return MemorySegment.NULL;
         return MemorySegment.ofAddress(address).reinterpret(nmemb * size);
     }
 
+    /*
+     * zeroed memory with its address aligned to alignment, e.g. the logical block size for
+     * O_DIRECT io. MemorySegment.NULL if it could not be allocated, freed with free().
+     */
+    public static MemorySegment alignedCallocSegment(long alignment, long size) {
+        long address;
+        try {
+            address = (long) alignedCallocHandle.invokeExact(alignment, size);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(address == 0L) return MemorySegment.NULL;
+        return MemorySegment.ofAddress(address).reinterpret(size);
+    }
+
     public static void free(long address) {
-        invokeWithArgumentsVoidUnchecked(freeHandle, address);
+        try {
+            freeHandle.invokeExact(address);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
     }
 
     public static void free(MemorySegment segment) {
-        invokeWithArgumentsVoidUnchecked(freeHandle, segment.address());
+        free(segment.address());
     }
 
     public static void clockGetTime(int clockid, MemorySegment tp) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(clockGetTimeHandle, clockid, tp);
+        int res;
+        try {
+            res = (int) clockGetTimeHandle.invokeExact(clockid, tp);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    // pins the calling thread to cpu
+    public static void setAffinity(int cpu) throws UnixException {
+        int res;
+        try {
+            res = (int) setAffinityHandle.invokeExact(cpu);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    public static int eventfd(int initval, int flags) throws UnixException {
+        int res;
+        try {
+            res = (int) eventfdHandle.invokeExact(initval, flags);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+        return res;
+    }
+
+    // adds value to the eventfd counter
+    public static void eventfdWrite(int fd, long value) throws UnixException {
+        int res;
+        try {
+            res = (int) eventfdWriteHandle.invokeExact(fd, value);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
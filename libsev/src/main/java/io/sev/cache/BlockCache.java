@@ -0,0 +1,275 @@
+package io.sev.cache;
+
+import static io.sev.util.unix.Macros.*;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.loop.uring.UringCompletion;
+import io.sev.loop.uring.UringLoop;
+
+/*
+ * a cache of file blocks in one off-heap arena, filled with reads on the loop.
+ *
+ * a block is identified by the fd it was read from and its index in the file, block i
+ * starting at offset i * blockSize. a hit calls back right away, a miss reads the block
+ * into a free frame and calls back once the read completed. misses on a block already
+ * being read wait for that read instead of issuing their own.
+ *
+ * frames are evicted with CLOCK: a hit sets the frame's reference bit, the hand clears
+ * set bits and takes the first frame whose bit was already clear. frames being read or
+ * handed to callbacks are skipped, a miss that finds no frame to take fails with -ENOBUFS.
+ *
+ * the arena is aligned to blockSize, so fds opened with O_DIRECT work as long as
+ * blockSize is a multiple of the device's block size. owned by the loop's thread.
+ */
+public final class BlockCache {
+
+    public interface BlockCallback {
+        /*
+         * result is the number of valid bytes in block, less than the block size for the
+         * block at the end of the file, or -errno. block is only valid during the call.
+         */
+        public abstract void invoke(Object context, UringLoop loop, MemorySegment block, int result);
+    }
+
+    private static final int EMPTY = 0;
+
+    private static final int LOADING = 1;
+
+    private static final int READY = 2;
+
+    private static final class Key {
+        private int fd;
+        private long block;
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && key.fd == fd && key.block == block;
+        }
+        @Override
+        public int hashCode() {
+            return 31 * fd + Long.hashCode(block);
+        }
+    }
+
+    private static final class Waiter {
+        private final Object context;
+        private final BlockCallback callback;
+        private Waiter(Object context, BlockCallback callback) {
+            this.context = context;
+            this.callback = callback;
+        }
+    }
+
+    private final class Frame {
+        private final Key key = new Key();
+        private final MemorySegment buffer;
+        private final UringCompletion read;
+        private final List<Waiter> waiters = new ArrayList<>();
+        private int state = EMPTY;
+        private int length;
+        private boolean referenced;
+        private int pins;
+        // invalidated while being read or handed out, dropped once that is done
+        private boolean stale;
+        private Frame(MemorySegment buffer) {
+            this.buffer = buffer;
+            this.read = new UringCompletion()
+                    .operation(new Operation.Read().buf(buffer).nBytes(blockSize))
+                    .callback((ctx, l, completion, result) -> {
+                        loaded(this, result);
+                        return false;
+                    });
+        }
+    }
+
+    private final UringLoop loop;
+
+    private final int blockSize;
+
+    private final MemorySegment arena;
+
+    private final Frame[] frames;
+
+    private final HashMap<Key, Frame> table;
+
+    // reused for lookups
+    private final Key probe = new Key();
+
+    private int hand = 0;
+
+    private long hits = 0L;
+
+    private long misses = 0L;
+
+    private long coalesced = 0L;
+
+    private long evictions = 0L;
+
+    public BlockCache(UringLoop loop, int blockSize, int blocks) {
+        if(blockSize <= 0 || (blockSize & (blockSize - 1)) != 0 || blocks <= 0) {
+            throw new IllegalArgumentException("blockSize must be a power of two and blocks positive");
+        }
+        this.loop = loop;
+        this.blockSize = blockSize;
+        this.arena = Native.alignedCallocSegment(Math.max(blockSize, 8), (long) blockSize * blocks);
+        if(arena.equals(MemorySegment.NULL)) {
+            throw new OutOfMemoryError("could not allocate a block cache of " + blocks + " blocks");
+        }
+        this.frames = new Frame[blocks];
+        for(int i = 0; i < blocks; i++) {
+            frames[i] = new Frame(arena.asSlice((long) i * blockSize, blockSize));
+        }
+        this.table = new HashMap<>(blocks * 2);
+    }
+
+    // calls back with the block at index block of fd, right away if it is cached
+    public void get(int fd, long block, Object context, BlockCallback callback) {
+        probe.fd = fd;
+        probe.block = block;
+        Frame frame = table.get(probe);
+        if(frame != null) {
+            if(frame.state == READY) {
+                hits++;
+                frame.referenced = true;
+                frame.pins++;
+                try {
+                    callback.invoke(context, loop, frame.buffer.asSlice(0L, frame.length), frame.length);
+                } finally {
+                    if(--frame.pins == 0 && frame.stale) {
+                        drop(frame);
+                    }
+                }
+            } else {
+                misses++;
+                coalesced++;
+                frame.waiters.add(new Waiter(context, callback));
+            }
+            return;
+        }
+        misses++;
+        frame = evict();
+        if(frame == null) {
+            callback.invoke(context, loop, MemorySegment.NULL, -ENOBUFS);
+            return;
+        }
+        frame.key.fd = fd;
+        frame.key.block = block;
+        frame.state = LOADING;
+        frame.stale = false;
+        frame.waiters.add(new Waiter(context, callback));
+        table.put(frame.key, frame);
+        ((Operation.Read) frame.read.operation).fd(fd).offset(block * blockSize);
+        loop.enqueue(frame.read);
+    }
+
+    // drops the cached blocks of fd, to be called before fd is closed or the file changes
+    public void invalidate(int fd) {
+        for(Frame frame : frames) {
+            if(frame.state != EMPTY && frame.key.fd == fd) {
+                if(frame.state == LOADING || frame.pins > 0) {
+                    frame.stale = true;
+                    table.remove(frame.key);
+                } else {
+                    drop(frame);
+                }
+            }
+        }
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int blocks() {
+        return frames.length;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    // misses that waited for a read already in flight, counted in misses as well
+    public long coalesced() {
+        return coalesced;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    // frees the arena, reads still in flight have to be completed first
+    public void deinit() {
+        table.clear();
+        Native.free(arena);
+    }
+
+    private void loaded(Frame frame, int result) {
+        MemorySegment block = MemorySegment.NULL;
+        if(result >= 0) {
+            frame.state = READY;
+            frame.length = result;
+            frame.referenced = true;
+            block = frame.buffer.asSlice(0L, result);
+        } else if(!frame.stale) {
+            // failed reads are not cached, the frame stays LOADING until its waiters are done
+            table.remove(frame.key);
+        }
+        frame.pins++;
+        try {
+            for(Waiter waiter : frame.waiters) {
+                waiter.callback.invoke(waiter.context, loop, block, result);
+            }
+        } finally {
+            frame.pins--;
+            frame.waiters.clear();
+        }
+        if(result < 0) {
+            frame.state = EMPTY;
+            frame.stale = false;
+        } else if(frame.stale) {
+            drop(frame);
+        }
+    }
+
+    // a frame to load into, or null if all of them are in use
+    private Frame evict() {
+        // two sweeps: the first may only clear reference bits
+        for(int i = 0; i < 2 * frames.length; i++) {
+            Frame frame = frames[hand];
+            hand = hand + 1 == frames.length ? 0 : hand + 1;
+            if(frame.state == EMPTY) {
+                return frame;
+            }
+            if(frame.state == LOADING || frame.pins > 0) {
+                continue;
+            }
+            if(frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            evictions++;
+            drop(frame);
+            return frame;
+        }
+        return null;
+    }
+
+    private void drop(Frame frame) {
+        if(!frame.stale) {
+            table.remove(frame.key);
+        }
+        frame.state = EMPTY;
+        frame.referenced = false;
+        frame.stale = false;
+    }
+
+}
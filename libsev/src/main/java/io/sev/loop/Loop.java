@@ -18,8 +18,29 @@ public abstract class Loop<L extends Loop<L, T>, T extends Completion<L, T>> {
 
     public abstract void enqueue(T completion);
 
+    public void enqueueAll(T[] completions) {
+        for(T completion : completions) {
+            enqueue(completion);
+        }
+    }
+
+    // empties completions
+    public void enqueueAll(IntrusiveQueue<T> completions) {
+        T completion;
+        while((completion = completions.poll()) != null) {
+            enqueue(completion);
+        }
+    }
+
     public abstract void cancel(T completion, Callback<L, T> callback);
 
-    public abstract void timer(long ns, Object context, Callback<L, T> callback);
+    /*
+     * the returned handle identifies this one timer, for cancelTimer(). timer completions
+     * are recycled once they fired, a handle kept past that never reaches the next timer.
+     */
+    public abstract long timer(long ns, Object context, Callback<L, T> callback);
+
+    // a timer that already fired or was cancelled completes the cancel with -ENOENT
+    public abstract void cancelTimer(long timer, Callback<L, T> callback);
     
 }
@@ -2,24 +2,40 @@ package io.sev.loop;
 
 import java.lang.foreign.MemorySegment;
 
+import io.sev.util.iovec.Iovecs;
+import io.sev.util.iovec.Msghdr;
 import io.sev.util.unix.Macros;
 
 public abstract class Operation {
 
     public Op op = null;
 
+    /*
+     * relative timeout in ns, 0 for none. an operation still running when it expires is
+     * cancelled and completes with -ECANCELED (-ETIME for timers, -EINTR for some others).
+     */
+    public long deadlineNs = 0L;
+
     protected Operation(Op op) {
         this.op = op;
     }
 
+    // FdOperation returns its own type, on the other operations this comes last in a chain
+    public Operation deadline(long ns) {
+        this.deadlineNs = ns;
+        return this;
+    }
+
     public static class Nop extends Operation {
         public Nop() {
             super(Op.NOP);
         }
     }
 
-    private static class FdOperation<T extends FdOperation<T>> extends Operation {
+    public static class FdOperation<T extends FdOperation<T>> extends Operation {
         public int fd;
+        // fd is a slot of the loop's registered file table
+        public boolean fixed = false;
         protected FdOperation(Op op, int fd) {
             super(op);
             this.fd = fd;
@@ -31,6 +47,15 @@ public abstract class Operation {
             this.fd = fd;
             return (T) this;
         }
+        public T fixed(boolean fixed) {
+            this.fixed = fixed;
+            return (T) this;
+        }
+        @Override
+        public T deadline(long ns) {
+            this.deadlineNs = ns;
+            return (T) this;
+        }
     }
 
     public static class Accept extends FdOperation<Accept> {
@@ -38,6 +63,8 @@ public abstract class Operation {
         public MemorySegment addrLen = MemorySegment.NULL;
         public int flags = 0;
         public boolean multishot = false;
+        // install the accepted socket into a free slot of the registered file table, the slot is the result
+        public boolean direct = false;
         public Accept(int fd, MemorySegment addr, MemorySegment addrLen, int flags, boolean multishot) {
             super(Op.ACCEPT, fd);
             this.addr = addr; this.addrLen = addrLen; this.flags = flags; this.multishot = multishot;
@@ -61,6 +88,10 @@ public abstract class Operation {
             this.multishot = multishot;
             return this;
         }
+        public Accept direct(boolean direct) {
+            this.direct = direct;
+            return this;
+        }
     }
 
     public static class Connect extends FdOperation<Connect> {
@@ -92,6 +123,269 @@ public abstract class Operation {
         }
     }
 
+    public static class OpenAt extends Operation {
+        public int dirFd = Macros.AT_FDCWD;
+        // nul terminated, see PathUtil
+        public MemorySegment path;
+        public int flags = 0;
+        public int mode = 0;
+        // install the file into a free slot of the registered file table, the slot is the result
+        public boolean direct = false;
+        public OpenAt(int dirFd, MemorySegment path, int flags, int mode) {
+            super(Op.OPENAT);
+            this.dirFd = dirFd; this.path = path; this.flags = flags; this.mode = mode;
+        }
+        public OpenAt() {
+            super(Op.OPENAT);
+        }
+        public OpenAt dirFd(int dirFd) {
+            this.dirFd = dirFd;
+            return this;
+        }
+        public OpenAt path(MemorySegment path) {
+            this.path = path;
+            return this;
+        }
+        public OpenAt flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+        public OpenAt mode(int mode) {
+            this.mode = mode;
+            return this;
+        }
+        public OpenAt direct(boolean direct) {
+            this.direct = direct;
+            return this;
+        }
+    }
+
+    /*
+     * posts a completion to another ring, fd is that ring's fd. with sendFd the fixed file
+     * sourceSlot of this ring is installed into targetSlot of the other ring's file table,
+     * otherwise the other ring gets a cqe with user_data data, res len and, with passFlags,
+     * flags cqeFlags. skipCqe leaves out the cqe on the other ring.
+     */
+    public static class MsgRing extends FdOperation<MsgRing> {
+        public long data = 0L;
+        public int len = 0;
+        public boolean passFlags = false;
+        public int cqeFlags = 0;
+        public boolean sendFd = false;
+        public int sourceSlot = -1;
+        public int targetSlot = Macros.IORING_FILE_INDEX_ALLOC;
+        public boolean skipCqe = false;
+        public MsgRing(int fd, long data, int len) {
+            super(Op.MSG_RING, fd);
+            this.data = data; this.len = len;
+        }
+        public MsgRing() {
+            super(Op.MSG_RING);
+        }
+        public MsgRing data(long data) {
+            this.data = data;
+            return this;
+        }
+        public MsgRing len(int len) {
+            this.len = len;
+            return this;
+        }
+        public MsgRing cqeFlags(int cqeFlags) {
+            this.passFlags = true;
+            this.cqeFlags = cqeFlags;
+            return this;
+        }
+        public MsgRing sendFd(int sourceSlot, int targetSlot) {
+            this.sendFd = true;
+            this.sourceSlot = sourceSlot; this.targetSlot = targetSlot;
+            return this;
+        }
+        public MsgRing skipCqe(boolean skipCqe) {
+            this.skipCqe = skipCqe;
+            return this;
+        }
+    }
+
+    // statxbuf receives a struct statx, see StatxUtil. AT_EMPTY_PATH with an empty path stats dirFd itself
+    public static class Statx extends Operation {
+        public int dirFd = Macros.AT_FDCWD;
+        public MemorySegment path;
+        public int flags = 0;
+        public int mask = Macros.STATX_BASIC_STATS;
+        public MemorySegment statxbuf;
+        public Statx(int dirFd, MemorySegment path, int flags, int mask, MemorySegment statxbuf) {
+            super(Op.STATX);
+            this.dirFd = dirFd; this.path = path; this.flags = flags; this.mask = mask; this.statxbuf = statxbuf;
+        }
+        public Statx() {
+            super(Op.STATX);
+        }
+        public Statx dirFd(int dirFd) {
+            this.dirFd = dirFd;
+            return this;
+        }
+        public Statx path(MemorySegment path) {
+            this.path = path;
+            return this;
+        }
+        public Statx flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+        public Statx mask(int mask) {
+            this.mask = mask;
+            return this;
+        }
+        public Statx statxbuf(MemorySegment statxbuf) {
+            this.statxbuf = statxbuf;
+            return this;
+        }
+    }
+
+    /*
+     * fsync, or fdatasync with datasync. a len other than 0 only syncs offset to offset + len.
+     * with rangeOnly the range is only written back with sync_file_range, without a device
+     * flush and without syncing metadata.
+     */
+    public static class Fsync extends FdOperation<Fsync> {
+        public boolean datasync = false;
+        public long offset = 0L;
+        public int len = 0;
+        public boolean rangeOnly = false;
+        public Fsync(int fd, boolean datasync) {
+            super(Op.FSYNC, fd);
+            this.datasync = datasync;
+        }
+        public Fsync() {
+            super(Op.FSYNC);
+        }
+        public Fsync datasync(boolean datasync) {
+            this.datasync = datasync;
+            return this;
+        }
+        public Fsync range(long offset, int len) {
+            this.offset = offset; this.len = len;
+            return this;
+        }
+        public Fsync rangeOnly(boolean rangeOnly) {
+            this.rangeOnly = rangeOnly;
+            return this;
+        }
+    }
+
+    // mode 0 allocates, FALLOC_FL_* for the rest
+    public static class Fallocate extends FdOperation<Fallocate> {
+        public int mode = 0;
+        public long offset = 0L;
+        public long len;
+        public Fallocate(int fd, int mode, long offset, long len) {
+            super(Op.FALLOCATE, fd);
+            this.mode = mode; this.offset = offset; this.len = len;
+        }
+        public Fallocate() {
+            super(Op.FALLOCATE);
+        }
+        public Fallocate mode(int mode) {
+            this.mode = mode;
+            return this;
+        }
+        public Fallocate offset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+        public Fallocate len(long len) {
+            this.len = len;
+            return this;
+        }
+    }
+
+    // AT_REMOVEDIR removes a directory
+    public static class UnlinkAt extends Operation {
+        public int dirFd = Macros.AT_FDCWD;
+        public MemorySegment path;
+        public int flags = 0;
+        public UnlinkAt(int dirFd, MemorySegment path, int flags) {
+            super(Op.UNLINKAT);
+            this.dirFd = dirFd; this.path = path; this.flags = flags;
+        }
+        public UnlinkAt() {
+            super(Op.UNLINKAT);
+        }
+        public UnlinkAt dirFd(int dirFd) {
+            this.dirFd = dirFd;
+            return this;
+        }
+        public UnlinkAt path(MemorySegment path) {
+            this.path = path;
+            return this;
+        }
+        public UnlinkAt flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+    }
+
+    // flags are RENAME_NOREPLACE, RENAME_EXCHANGE
+    public static class RenameAt extends Operation {
+        public int oldDirFd = Macros.AT_FDCWD;
+        public MemorySegment oldPath;
+        public int newDirFd = Macros.AT_FDCWD;
+        public MemorySegment newPath;
+        public int flags = 0;
+        public RenameAt(int oldDirFd, MemorySegment oldPath, int newDirFd, MemorySegment newPath, int flags) {
+            super(Op.RENAMEAT);
+            this.oldDirFd = oldDirFd; this.oldPath = oldPath; this.newDirFd = newDirFd; this.newPath = newPath; this.flags = flags;
+        }
+        public RenameAt() {
+            super(Op.RENAMEAT);
+        }
+        public RenameAt oldPath(int oldDirFd, MemorySegment oldPath) {
+            this.oldDirFd = oldDirFd; this.oldPath = oldPath;
+            return this;
+        }
+        public RenameAt newPath(int newDirFd, MemorySegment newPath) {
+            this.newDirFd = newDirFd; this.newPath = newPath;
+            return this;
+        }
+        public RenameAt oldPath(MemorySegment oldPath) {
+            this.oldPath = oldPath;
+            return this;
+        }
+        public RenameAt newPath(MemorySegment newPath) {
+            this.newPath = newPath;
+            return this;
+        }
+        public RenameAt flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+    }
+
+    public static class MkdirAt extends Operation {
+        public int dirFd = Macros.AT_FDCWD;
+        public MemorySegment path;
+        public int mode = 0755;
+        public MkdirAt(int dirFd, MemorySegment path, int mode) {
+            super(Op.MKDIRAT);
+            this.dirFd = dirFd; this.path = path; this.mode = mode;
+        }
+        public MkdirAt() {
+            super(Op.MKDIRAT);
+        }
+        public MkdirAt dirFd(int dirFd) {
+            this.dirFd = dirFd;
+            return this;
+        }
+        public MkdirAt path(MemorySegment path) {
+            this.path = path;
+            return this;
+        }
+        public MkdirAt mode(int mode) {
+            this.mode = mode;
+            return this;
+        }
+    }
+
     public static class Shutdown extends FdOperation<Shutdown> {
         public int how = Macros.SHUT_RDWR;
         public Shutdown(int fd, int how) {
@@ -157,10 +451,185 @@ public abstract class Operation {
         }
     }
 
+    // buf has to lie within the registered buffer bufIndex
+    public static class ReadFixed extends FdOperation<ReadFixed> {
+        public MemorySegment buf;
+        public int nBytes;
+        public long offset = 0L;
+        public int bufIndex;
+        public ReadFixed(int fd, MemorySegment buf, int nBytes, long offset, int bufIndex) {
+            super(Op.READ_FIXED, fd);
+            this.buf = buf; this.nBytes = nBytes; this.offset = offset; this.bufIndex = bufIndex;
+        }
+        public ReadFixed() {
+            super(Op.READ_FIXED);
+        }
+        public ReadFixed buf(MemorySegment buf) {
+            this.buf = buf;
+            return this;
+        }
+        public ReadFixed nBytes(int nBytes) {
+            this.nBytes = nBytes;
+            return this;
+        }
+        public ReadFixed offset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+        public ReadFixed bufIndex(int bufIndex) {
+            this.bufIndex = bufIndex;
+            return this;
+        }
+    }
+
+    // buf has to lie within the registered buffer bufIndex
+    public static class WriteFixed extends FdOperation<WriteFixed> {
+        public MemorySegment buf;
+        public int nBytes;
+        public long offset = 0L;
+        public int bufIndex;
+        public WriteFixed(int fd, MemorySegment buf, int nBytes, long offset, int bufIndex) {
+            super(Op.WRITE_FIXED, fd);
+            this.buf = buf; this.nBytes = nBytes; this.offset = offset; this.bufIndex = bufIndex;
+        }
+        public WriteFixed() {
+            super(Op.WRITE_FIXED);
+        }
+        public WriteFixed buf(MemorySegment buf) {
+            this.buf = buf;
+            return this;
+        }
+        public WriteFixed nBytes(int nBytes) {
+            this.nBytes = nBytes;
+            return this;
+        }
+        public WriteFixed offset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+        public WriteFixed bufIndex(int bufIndex) {
+            this.bufIndex = bufIndex;
+            return this;
+        }
+    }
+
+    // iovecs is an array of count struct iovec, see Iovecs
+    public static class Readv extends FdOperation<Readv> {
+        public MemorySegment iovecs;
+        public int count;
+        public long offset = 0L;
+        public Readv(int fd, MemorySegment iovecs, int count, long offset) {
+            super(Op.READV, fd);
+            this.iovecs = iovecs; this.count = count; this.offset = offset;
+        }
+        public Readv() {
+            super(Op.READV);
+        }
+        public Readv iovecs(MemorySegment iovecs, int count) {
+            this.iovecs = iovecs; this.count = count;
+            return this;
+        }
+        public Readv iovecs(Iovecs iovecs) {
+            return iovecs(iovecs.segment(), iovecs.count());
+        }
+        public Readv offset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+    }
+
+    // gathers all iovecs into one write
+    public static class Writev extends FdOperation<Writev> {
+        public MemorySegment iovecs;
+        public int count;
+        public long offset = 0L;
+        public Writev(int fd, MemorySegment iovecs, int count, long offset) {
+            super(Op.WRITEV, fd);
+            this.iovecs = iovecs; this.count = count; this.offset = offset;
+        }
+        public Writev() {
+            super(Op.WRITEV);
+        }
+        public Writev iovecs(MemorySegment iovecs, int count) {
+            this.iovecs = iovecs; this.count = count;
+            return this;
+        }
+        public Writev iovecs(Iovecs iovecs) {
+            return iovecs(iovecs.segment(), iovecs.count());
+        }
+        public Writev offset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+    }
+
+    // msg is a struct msghdr, see Msghdr
+    public static class SendMsg extends FdOperation<SendMsg> {
+        public MemorySegment msg;
+        public int flags = 0;
+        public SendMsg(int fd, MemorySegment msg, int flags) {
+            super(Op.SENDMSG, fd);
+            this.msg = msg; this.flags = flags;
+        }
+        public SendMsg() {
+            super(Op.SENDMSG);
+        }
+        public SendMsg msg(MemorySegment msg) {
+            this.msg = msg;
+            return this;
+        }
+        public SendMsg msg(Msghdr msg) {
+            return msg(msg.segment());
+        }
+        public SendMsg flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+    }
+
+    public static class RecvMsg extends FdOperation<RecvMsg> {
+        public MemorySegment msg;
+        public int flags = 0;
+        // provided buffer group to receive into instead of the msghdr's iovecs, -1 for none
+        public int bufferGroup = -1;
+        // stays armed across receives, requires a buffer group, see Msghdr for the buffer layout
+        public boolean multishot = false;
+        public RecvMsg(int fd, MemorySegment msg, int flags) {
+            super(Op.RECVMSG, fd);
+            this.msg = msg; this.flags = flags;
+        }
+        public RecvMsg() {
+            super(Op.RECVMSG);
+        }
+        public RecvMsg msg(MemorySegment msg) {
+            this.msg = msg;
+            return this;
+        }
+        public RecvMsg msg(Msghdr msg) {
+            return msg(msg.segment());
+        }
+        public RecvMsg flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+        public RecvMsg bufferGroup(int bufferGroup) {
+            this.bufferGroup = bufferGroup;
+            return this;
+        }
+        public RecvMsg multishot(boolean multishot) {
+            this.multishot = multishot;
+            return this;
+        }
+    }
+
     public static class Recv extends FdOperation<Recv> {
         public MemorySegment buf;
         public long len;
         public int flags = 0;
+        // provided buffer group to receive into instead of buf, -1 for none
+        public int bufferGroup = -1;
+        // stays armed across receives, requires a buffer group
+        public boolean multishot = false;
         public Recv(int fd, MemorySegment buf, long len, int flags) {
             super(Op.RECV, fd);
             this.buf = buf; this.len = len; this.flags = flags;
@@ -180,12 +649,22 @@ public abstract class Operation {
             this.flags = flags;
             return this;
         }
+        public Recv bufferGroup(int bufferGroup) {
+            this.bufferGroup = bufferGroup;
+            return this;
+        }
+        public Recv multishot(boolean multishot) {
+            this.multishot = multishot;
+            return this;
+        }
     }
 
     public static class Send extends FdOperation<Send> {
         public MemorySegment buf;
         public long len;
         public int flags = 0;
+        // registered buffer buf lies within, -1 for none
+        public int bufIndex = -1;
         public Send(int fd, MemorySegment buf, long len, int flags) {
             super(Op.SEND, fd);
             this.buf = buf; this.len = len; this.flags = flags;
@@ -205,6 +684,153 @@ public abstract class Operation {
             this.flags = flags;
             return this;
         }
+        public Send bufIndex(int bufIndex) {
+            this.bufIndex = bufIndex;
+            return this;
+        }
+    }
+
+    /*
+     * zero-copy send, the kernel sends straight from buf. completes twice: first with the
+     * bytes sent and IORING_CQE_F_MORE, then with IORING_CQE_F_NOTIF once the kernel let go
+     * of buf, see UringCompletion.notification(). buf must not be touched before that.
+     */
+    public static class SendZc extends FdOperation<SendZc> {
+        public MemorySegment buf;
+        public long len;
+        public int flags = 0;
+        // IORING_RECVSEND_POLL_FIRST, IORING_SEND_ZC_REPORT_USAGE
+        public int zcFlags = 0;
+        // registered buffer buf lies within, -1 for none
+        public int bufIndex = -1;
+        public SendZc(int fd, MemorySegment buf, long len, int flags) {
+            super(Op.SEND_ZC, fd);
+            this.buf = buf; this.len = len; this.flags = flags;
+        }
+        public SendZc() {
+            super(Op.SEND_ZC);
+        }
+        public SendZc buf(MemorySegment buf) {
+            this.buf = buf;
+            return this;
+        }
+        public SendZc len(long len) {
+            this.len = len;
+            return this;
+        }
+        public SendZc flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+        public SendZc zcFlags(int zcFlags) {
+            this.zcFlags = zcFlags;
+            return this;
+        }
+        public SendZc bufIndex(int bufIndex) {
+            this.bufIndex = bufIndex;
+            return this;
+        }
+    }
+
+    // zero-copy sendmsg, completes twice like SendZc
+    public static class SendMsgZc extends FdOperation<SendMsgZc> {
+        public MemorySegment msg;
+        public int flags = 0;
+        public SendMsgZc(int fd, MemorySegment msg, int flags) {
+            super(Op.SENDMSG_ZC, fd);
+            this.msg = msg; this.flags = flags;
+        }
+        public SendMsgZc() {
+            super(Op.SENDMSG_ZC);
+        }
+        public SendMsgZc msg(MemorySegment msg) {
+            this.msg = msg;
+            return this;
+        }
+        public SendMsgZc msg(Msghdr msg) {
+            return msg(msg.segment());
+        }
+        public SendMsgZc flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+    }
+
+    /*
+     * moves nBytes from fdIn to fd, at least one of them a pipe, without copying them
+     * through user space. offsets of -1 use the file position and are required for pipes
+     * and sockets. fixed applies to fd, fixedIn to fdIn.
+     */
+    public static class Splice extends FdOperation<Splice> {
+        public int fdIn;
+        public long offIn = -1L;
+        public long offOut = -1L;
+        public int nBytes;
+        // SPLICE_F_MOVE, SPLICE_F_NONBLOCK, SPLICE_F_MORE
+        public int flags = 0;
+        public boolean fixedIn = false;
+        public Splice(int fdIn, int fdOut, int nBytes, int flags) {
+            super(Op.SPLICE, fdOut);
+            this.fdIn = fdIn; this.nBytes = nBytes; this.flags = flags;
+        }
+        public Splice() {
+            super(Op.SPLICE);
+        }
+        public Splice fdIn(int fdIn) {
+            this.fdIn = fdIn;
+            return this;
+        }
+        public Splice offIn(long offIn) {
+            this.offIn = offIn;
+            return this;
+        }
+        public Splice offOut(long offOut) {
+            this.offOut = offOut;
+            return this;
+        }
+        public Splice nBytes(int nBytes) {
+            this.nBytes = nBytes;
+            return this;
+        }
+        public Splice flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+        public Splice fixedIn(boolean fixedIn) {
+            this.fixedIn = fixedIn;
+            return this;
+        }
+    }
+
+    // duplicates up to nBytes from pipe fdIn into pipe fd, fdIn keeps its data
+    public static class Tee extends FdOperation<Tee> {
+        public int fdIn;
+        public int nBytes;
+        public int flags = 0;
+        public boolean fixedIn = false;
+        public Tee(int fdIn, int fdOut, int nBytes, int flags) {
+            super(Op.TEE, fdOut);
+            this.fdIn = fdIn; this.nBytes = nBytes; this.flags = flags;
+        }
+        public Tee() {
+            super(Op.TEE);
+        }
+        public Tee fdIn(int fdIn) {
+            this.fdIn = fdIn;
+            return this;
+        }
+        public Tee nBytes(int nBytes) {
+            this.nBytes = nBytes;
+            return this;
+        }
+        public Tee flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+        public Tee fixedIn(boolean fixedIn) {
+            this.fixedIn = fixedIn;
+            return this;
+        }
     }
 
     public static class Poll extends FdOperation<Poll> {
@@ -266,14 +892,32 @@ public abstract class Operation {
         ACCEPT,
         CONNECT,
         CLOSE,
+        OPENAT,
+        STATX,
+        FSYNC,
+        FALLOCATE,
+        UNLINKAT,
+        RENAMEAT,
+        MKDIRAT,
         SHUTDOWN,
         READ,
         WRITE,
+        READ_FIXED,
+        WRITE_FIXED,
+        READV,
+        WRITEV,
         RECV,
         SEND,
+        RECVMSG,
+        SENDMSG,
+        SEND_ZC,
+        SENDMSG_ZC,
+        SPLICE,
+        TEE,
         POLL,
         TIMER,
         CANCEL,
+        MSG_RING,
         NOP
     }
 }
@@ -0,0 +1,7 @@
+package io.sev.loop.timer;
+
+public interface TimerCallback<L> {
+
+    public abstract void invoke(Object context, L loop, WheelTimer<L> timer);
+
+}
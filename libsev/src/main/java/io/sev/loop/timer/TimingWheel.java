@@ -0,0 +1,231 @@
+package io.sev.loop.timer;
+
+import io.sev.queue.IntrusiveQueue;
+
+/*
+ * hierarchical timing wheel, 8 levels of 64 slots each. level l covers deltas of
+ * [64^l, 64^(l+1)) ticks, timers further out than 64^8 ticks wait in the last level.
+ * slots are indexed by absolute tick, so a slot of level l > 0 is cascaded into the
+ * lower levels when the wheel reaches the start of its period.
+ *
+ * insert and cancel are O(1). touch() is O(1) as well and does not even move the
+ * timer: the new deadline is only looked at when the old one comes up, at which
+ * point the timer is re-inserted instead of fired.
+ *
+ * the wheel has no notion of a clock, callers pass in the current time in ns.
+ */
+public final class TimingWheel<L> {
+
+    private static final int WHEEL_BITS = 6;
+
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final int LEVELS = 8;
+
+    private static final long MAX_DELTA = (1L << (LEVELS * WHEEL_BITS)) - 1;
+
+    private final long tickNs;
+
+    private final long startNs;
+
+    private long currentTick = 0L;
+
+    private final IntrusiveQueue<WheelTimer<L>>[][] slots;
+
+    // bit i of occupied[l] is set when slot i of level l is not empty
+    private final long[] occupied = new long[LEVELS];
+
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickNs, long nowNs) {
+        if(tickNs <= 0L) {
+            throw new IllegalArgumentException("tickNs must be positive");
+        }
+        this.tickNs = tickNs;
+        this.startNs = nowNs;
+        this.slots = new IntrusiveQueue[LEVELS][WHEEL_SIZE];
+        for(int level = 0; level < LEVELS; level++) {
+            for(int slot = 0; slot < WHEEL_SIZE; slot++) {
+                slots[level][slot] = new IntrusiveQueue<>();
+            }
+        }
+    }
+
+    public long tickNs() {
+        return tickNs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // (re)schedules a one-shot timer to fire delayNs after nowNs
+    public void schedule(WheelTimer<L> timer, long nowNs, long delayNs) {
+        schedule(timer, nowNs, delayNs, 0L);
+    }
+
+    // (re)schedules a timer to first fire delayNs after nowNs, then every periodNs if periodNs > 0
+    public void schedule(WheelTimer<L> timer, long nowNs, long delayNs, long periodNs) {
+        if(delayNs < 0L || periodNs < 0L) {
+            throw new IllegalArgumentException("negative delay or period");
+        }
+        cancel(timer);
+        timer.delay = delayNs;
+        timer.period = periodNs;
+        timer.deadline = nowNs + delayNs;
+        insert(timer);
+    }
+
+    // pushes the deadline of a scheduled timer back to nowNs plus the delay it was scheduled with
+    public void touch(WheelTimer<L> timer, long nowNs) {
+        if(!timer.isScheduled()) {
+            return;
+        }
+        long deadline = nowNs + timer.delay;
+        if(deadline >= timer.deadline) {
+            timer.deadline = deadline;
+        } else {
+            timer.deadline = deadline;
+            remove(timer);
+            insert(timer);
+        }
+    }
+
+    public boolean cancel(WheelTimer<L> timer) {
+        if(!timer.isScheduled()) {
+            return false;
+        }
+        remove(timer);
+        return true;
+    }
+
+    // deadline in ns at which the wheel next has work to do, Long.MAX_VALUE if empty
+    public long nextDeadline() {
+        long tick = nextTick();
+        if(tick == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return startNs + tick * tickNs;
+    }
+
+    // fires every timer whose deadline is at or before nowNs
+    public void advance(long nowNs, L loop) {
+        long nowTick = (nowNs - startNs) / tickNs;
+        while(currentTick < nowTick) {
+            long next = nextTick();
+            if(next > nowTick) {
+                currentTick = nowTick;
+                break;
+            }
+            currentTick = next;
+            cascade(next);
+            expire(next, nowNs, loop);
+        }
+    }
+
+    private long nextTick() {
+        long best = Long.MAX_VALUE;
+        for(int level = 0; level < LEVELS; level++) {
+            long mask = occupied[level];
+            if(mask == 0L) {
+                continue;
+            }
+            int shift = level * WHEEL_BITS;
+            long period = currentTick >>> shift;
+            int start = (int) ((period + 1L) & WHEEL_MASK);
+            int distance = Long.numberOfTrailingZeros(Long.rotateRight(mask, start));
+            long tick = (period + 1L + distance) << shift;
+            if(tick < best) {
+                best = tick;
+            }
+        }
+        return best;
+    }
+
+    private void cascade(long tick) {
+        for(int level = LEVELS - 1; level > 0; level--) {
+            int shift = level * WHEEL_BITS;
+            if((tick & ((1L << shift) - 1L)) != 0L) {
+                continue;
+            }
+            int slot = (int) ((tick >>> shift) & WHEEL_MASK);
+            if((occupied[level] & (1L << slot)) == 0L) {
+                continue;
+            }
+            IntrusiveQueue<WheelTimer<L>> queue = slots[level][slot];
+            for(int n = queue.size(); n > 0; n--) {
+                WheelTimer<L> timer = queue.peek();
+                remove(timer);
+                // timers due on this very tick go to the level 0 slot expired right after
+                insert(timer, tick);
+            }
+        }
+    }
+
+    private void expire(long tick, long nowNs, L loop) {
+        int slot = (int) (tick & WHEEL_MASK);
+        IntrusiveQueue<WheelTimer<L>> queue = slots[0][slot];
+        // nothing is inserted into the slot of the current tick, callbacks may cancel other timers in it
+        while(!queue.isEmpty()) {
+            WheelTimer<L> timer = queue.peek();
+            remove(timer);
+            if(expiryTick(timer.deadline) > tick) {
+                // touched since it was inserted
+                insert(timer);
+                continue;
+            }
+            if(timer.period > 0L) {
+                timer.deadline = Math.max(timer.deadline + timer.period, nowNs);
+                insert(timer);
+            }
+            timer.callback.invoke(timer.context, loop, timer);
+        }
+    }
+
+    private long expiryTick(long deadline) {
+        long delta = deadline - startNs;
+        if(delta <= 0L) {
+            return 0L;
+        }
+        return (delta + tickNs - 1L) / tickNs;
+    }
+
+    private void insert(WheelTimer<L> timer) {
+        insert(timer, currentTick + 1L);
+    }
+
+    private void insert(WheelTimer<L> timer, long minTick) {
+        long expiry = Math.max(expiryTick(timer.deadline), minTick);
+        long delta = expiry - currentTick;
+        if(delta > MAX_DELTA) {
+            delta = MAX_DELTA;
+            expiry = currentTick + MAX_DELTA;
+        }
+        int level = delta == 0L ? 0 : (63 - Long.numberOfLeadingZeros(delta)) / WHEEL_BITS;
+        int slot = (int) ((expiry >>> (level * WHEEL_BITS)) & WHEEL_MASK);
+        slots[level][slot].offer(timer);
+        occupied[level] |= 1L << slot;
+        timer.level = level;
+        timer.slot = slot;
+        size++;
+    }
+
+    private void remove(WheelTimer<L> timer) {
+        IntrusiveQueue<WheelTimer<L>> queue = slots[timer.level][timer.slot];
+        queue.unlink(timer);
+        if(queue.isEmpty()) {
+            occupied[timer.level] &= ~(1L << timer.slot);
+        }
+        timer.level = -1;
+        timer.slot = -1;
+        size--;
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.sev.loop.timer;
+
+import io.sev.queue.IntrusiveQueue;
+
+/*
+ * a timer living in a TimingWheel. timers are plain objects owned by the caller and
+ * can be scheduled, touched and cancelled any number of times without allocating.
+ */
+public final class WheelTimer<L> extends IntrusiveQueue.Element<WheelTimer<L>> {
+
+    public Object context = null;
+
+    public TimerCallback<L> callback;
+
+    // absolute deadline in ns, on the clock of the wheel
+    long deadline;
+
+    // delay the timer was last scheduled with, reused by touch()
+    long delay;
+
+    // 0 for one-shot timers
+    long period;
+
+    int level = -1;
+
+    int slot = -1;
+
+    public WheelTimer(Object context, TimerCallback<L> callback) {
+        this.context = context;
+        this.callback = callback;
+    }
+
+    public WheelTimer() {
+    }
+
+    public WheelTimer<L> context(Object context) {
+        this.context = context;
+        return this;
+    }
+
+    public WheelTimer<L> callback(TimerCallback<L> callback) {
+        this.callback = callback;
+        return this;
+    }
+
+    public boolean isScheduled() {
+        return level >= 0;
+    }
+
+    public long deadline() {
+        return deadline;
+    }
+
+    public long period() {
+        return period;
+    }
+
+}
@@ -0,0 +1,208 @@
+package io.sev.loop.uring;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.VarHandle;
+
+import io.sev.uring.IoUring;
+import io.sev.util.unix.UnixException;
+
+import static io.sev.Native.*;
+import static io.sev.util.unix.Macros.*;
+import static io.sev.util.unix.UnixException.unixException;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/*
+ * a pool of equally sized off-heap buffers, registered with the ring as a provided
+ * buffer ring. recvs with a buffer group set don't pin a buffer while they wait, the
+ * kernel picks one from the ring only once data arrives and reports its id in the
+ * cqe flags.
+ *
+ * buffers handed out by buffer() belong to the caller until given back with recycle().
+ * when the kernel supports incremental consumption (IOU_PBUF_RING_INC) a buffer can be
+ * filled by several completions, only the one without IORING_CQE_F_BUF_MORE hands it
+ * over to the caller.
+ *
+ * not thread safe, owned by the loop that created it.
+ */
+public final class BufferGroup {
+
+    /*
+     * struct io_uring_buf {
+     *   __u64 addr;    0
+     *   __u32 len;     8
+     *   __u16 bid;     12
+     *   __u16 resv;    14
+     * }
+     *
+     * struct io_uring_buf_ring overlays its __u16 tail onto bufs[0].resv
+     */
+    private static final long BUF_SIZE = 16L;
+    private static final long BUF_ADDR = 0L;
+    private static final long BUF_LEN = 8L;
+    private static final long BUF_BID = 12L;
+    private static final long RING_TAIL = 14L;
+
+    private static final VarHandle USHORT = JAVA_SHORT.varHandle();
+
+    private static final int MAX_ENTRIES = 1 << 15;
+
+    private final IoUring ring;
+
+    private final int bgid;
+
+    private final int count;
+
+    private final int size;
+
+    private final int mask;
+
+    private final boolean incremental;
+
+    private final long bufRing;
+
+    private final MemorySegment entries;
+
+    private final MemorySegment buffers;
+
+    // bytes of each buffer already filled by earlier completions, incremental rings only
+    private final int[] consumed;
+
+    private short tail = 0;
+
+    BufferGroup(IoUring ring, int bgid, int count, int size) throws UnixException {
+        if(count <= 0 || count > MAX_ENTRIES || Integer.bitCount(count) != 1) {
+            throw new IllegalArgumentException("buffer count must be a power of 2 no larger than " + MAX_ENTRIES);
+        }
+        if(size <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        this.ring = ring;
+        this.bgid = bgid;
+        this.count = count;
+        this.size = size;
+        this.mask = count - 1;
+        this.buffers = callocSegment(count, size);
+        if(buffers.address() == 0L) {
+            unixException(-ENOMEM);
+        }
+        long bufRing;
+        boolean incremental = true;
+        try {
+            try {
+                bufRing = ring.setupBufRing(count, bgid, IOU_PBUF_RING_INC);
+            } catch(UnixException ex) {
+                if(ex.errno() != EINVAL) {
+                    throw ex;
+                }
+                //kernel older than 6.12, every completion consumes a whole buffer
+                incremental = false;
+                bufRing = ring.setupBufRing(count, bgid, 0);
+            }
+        } catch(UnixException ex) {
+            free(buffers);
+            throw ex;
+        }
+        this.bufRing = bufRing;
+        this.incremental = incremental;
+        this.entries = MemorySegment.ofAddress(bufRing).reinterpret(count * BUF_SIZE);
+        this.consumed = incremental ? new int[count] : null;
+        for(int bid = 0; bid < count; bid++) {
+            add(bid, bid);
+        }
+        advance(count);
+    }
+
+    public int id() {
+        return bgid;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean incremental() {
+        return incremental;
+    }
+
+    // whether the kernel picked a buffer for a completion with these cqe flags
+    public static boolean hasBuffer(int cqeFlags) {
+        return (cqeFlags & IORING_CQE_F_BUFFER) != 0;
+    }
+
+    public static int bufferId(int cqeFlags) {
+        return cqeFlags >>> IORING_CQE_BUFFER_SHIFT;
+    }
+
+    // whether the buffer was handed over to the caller and has to be recycled
+    public static boolean released(int cqeFlags) {
+        return (cqeFlags & IORING_CQE_F_BUF_MORE) == 0;
+    }
+
+    /*
+     * the bytes received by a completion with these cqe flags and a result of res,
+     * MemorySegment.NULL if the kernel did not pick a buffer (errors, eof). only valid
+     * for the cqe being handled, the loop moves an incremental buffer on past its data
+     * before the callback runs.
+     */
+    public MemorySegment buffer(int cqeFlags, int res) {
+        if(!hasBuffer(cqeFlags) || res < 0) {
+            return MemorySegment.NULL;
+        }
+        int bid = bufferId(cqeFlags);
+        long offset = (long) bid * size;
+        if(incremental) {
+            offset += released(cqeFlags) ? consumed[bid] : consumed[bid] - res;
+        }
+        return buffers.asSlice(offset, res);
+    }
+
+    public MemorySegment buffer(UringCompletion completion, int res) {
+        return buffer(completion.cqeFlags, res);
+    }
+
+    // called by the loop exactly once per cqe, before its callback
+    void consume(int cqeFlags, int res) {
+        if(incremental && hasBuffer(cqeFlags) && res > 0 && !released(cqeFlags)) {
+            consumed[bufferId(cqeFlags)] += res;
+        }
+    }
+
+    // gives buffer bid back to the kernel
+    public void recycle(int bid) {
+        if(incremental) {
+            consumed[bid] = 0;
+        }
+        add(bid, 0);
+        advance(1);
+    }
+
+    void deinit() {
+        try {
+            ring.freeBufRing(bufRing, count, bgid);
+        } catch(UnixException ex) {
+            throw new RuntimeException(ex);
+        }
+        free(buffers);
+    }
+
+    // io_uring_buf_ring_add()
+    private void add(int bid, int offset) {
+        long entry = ((tail + offset) & mask) * BUF_SIZE;
+        entries.set(JAVA_LONG, entry + BUF_ADDR, buffers.address() + (long) bid * size);
+        entries.set(JAVA_INT, entry + BUF_LEN, size);
+        entries.set(JAVA_SHORT, entry + BUF_BID, (short) bid);
+    }
+
+    // io_uring_buf_ring_advance(), publishes the added buffers to the kernel
+    private void advance(int n) {
+        tail = (short) (tail + n);
+        USHORT.setRelease(entries, RING_TAIL, tail);
+    }
+
+}
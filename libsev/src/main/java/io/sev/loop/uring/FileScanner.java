@@ -0,0 +1,284 @@
+package io.sev.loop.uring;
+
+import static io.sev.util.unix.Macros.*;
+
+import java.lang.foreign.MemorySegment;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.util.unix.UnixException;
+
+/*
+ * reads a file front to back with depth reads of chunkSize bytes in flight, so the
+ * device always has the next requests queued while the consumer works on a chunk.
+ *
+ * chunks reach the consumer in file order whatever order their reads complete in. a
+ * chunk's buffer is reused for a read further ahead once the consumer hands it back
+ * with release(), which may happen during the callback or any time later, so at most
+ * depth chunks are read ahead of or held by the consumer.
+ *
+ * FileScanner scanner = new FileScanner(loop, fd, 128 * 1024, 16)
+ *         .start(null, (ctx, l, s, offset, chunk, result) -> {
+ *             if(result > 0) {
+ *                 consume(chunk);
+ *                 s.release(chunk);
+ *             } else {
+ *                 // 0 at the end of the range, -errno if a read failed
+ *                 s.close();
+ *             }
+ *         });
+ *
+ * the buffers are one arena aligned to ALIGNMENT, so fd may be opened with O_DIRECT as
+ * long as chunkSize and the start of the range are multiples of it. fixedBuffer(index)
+ * registers the arena as the loop's buffer index, in a table made with
+ * registerBuffersSparse(), and reads with Operation.ReadFixed.
+ *
+ * owned by the loop's thread.
+ */
+public final class FileScanner {
+
+    public interface ChunkCallback {
+        /*
+         * result is the length of chunk, the data at offset. the last call has a result of
+         * 0 once the range was read, or -errno, and a NULL chunk. no reads are in flight then.
+         */
+        public abstract void invoke(Object context, UringLoop loop, FileScanner scanner, long offset, MemorySegment chunk, int result);
+    }
+
+    public static final int ALIGNMENT = 4096;
+
+    private final class Slot {
+        private final MemorySegment buffer;
+        private final UringCompletion read;
+        private long seq;
+        private long offset;
+        // bytes of the range this read covers
+        private int wanted;
+        private int result;
+        private boolean done;
+        private Slot(MemorySegment buffer) {
+            this.buffer = buffer;
+            this.read = new UringCompletion()
+                    .callback((ctx, l, completion, result) -> {
+                        completed(this, result);
+                        return false;
+                    });
+        }
+    }
+
+    private final UringLoop loop;
+
+    private final int fd;
+
+    private final int chunkSize;
+
+    private final MemorySegment arena;
+
+    private final Slot[] slots;
+
+    // undelivered slots by seq % depth
+    private final Slot[] window;
+
+    private final int[] free;
+
+    private int freeCount;
+
+    public long start = 0L;
+
+    // -1 reads to the end of the file
+    public long length = -1L;
+
+    public int fixedBuffer = -1;
+
+    private Object context;
+
+    private ChunkCallback callback;
+
+    private long nextSeq = 0L;
+
+    private long nextOffset;
+
+    private long deliverSeq = 0L;
+
+    private int inFlight = 0;
+
+    // no more reads are issued: the range was read, the file ended, a read failed or stop()
+    private boolean ended = false;
+
+    private boolean eof = false;
+
+    private int error = 0;
+
+    private boolean finished = false;
+
+    private long bytes = 0L;
+
+    public FileScanner(UringLoop loop, int fd, int chunkSize, int depth) {
+        if(chunkSize <= 0 || chunkSize % ALIGNMENT != 0 || depth <= 0) {
+            throw new IllegalArgumentException("chunkSize must be a multiple of " + ALIGNMENT + " and depth positive");
+        }
+        this.loop = loop;
+        this.fd = fd;
+        this.chunkSize = chunkSize;
+        this.arena = Native.alignedCallocSegment(ALIGNMENT, (long) chunkSize * depth);
+        if(arena.equals(MemorySegment.NULL)) {
+            throw new OutOfMemoryError("could not allocate " + depth + " chunks of " + chunkSize);
+        }
+        this.slots = new Slot[depth];
+        this.window = new Slot[depth];
+        this.free = new int[depth];
+        for(int i = 0; i < depth; i++) {
+            slots[i] = new Slot(arena.asSlice((long) i * chunkSize, chunkSize));
+            free[i] = depth - 1 - i;
+        }
+        this.freeCount = depth;
+    }
+
+    public FileScanner range(long start, long length) {
+        this.start = start;
+        this.length = length;
+        return this;
+    }
+
+    public FileScanner fixedBuffer(int fixedBuffer) {
+        this.fixedBuffer = fixedBuffer;
+        return this;
+    }
+
+    public FileScanner start(Object context, ChunkCallback callback) throws UnixException {
+        this.context = context;
+        this.callback = callback;
+        this.nextOffset = start;
+        if(fixedBuffer >= 0) {
+            loop.updateBuffer(fixedBuffer, arena);
+        }
+        for(Slot slot : slots) {
+            slot.read.operation(fixedBuffer >= 0
+                    ? new Operation.ReadFixed().fd(fd).bufIndex(fixedBuffer)
+                    : new Operation.Read().fd(fd));
+        }
+        issue();
+        maybeFinish();
+        return this;
+    }
+
+    // hands a chunk's buffer back for reading further ahead
+    public void release(MemorySegment chunk) {
+        int index = (int) ((chunk.address() - arena.address()) / chunkSize);
+        free[freeCount++] = index;
+        issue();
+    }
+
+    /*
+     * no more chunks are delivered, the last callback gets -ECANCELED once the reads in
+     * flight completed, which is right away if none are.
+     */
+    public void stop() {
+        if(finished) {
+            return;
+        }
+        if(error == 0) {
+            error = -ECANCELED;
+        }
+        ended = true;
+        maybeFinish();
+    }
+
+    // bytes delivered so far
+    public long bytes() {
+        return bytes;
+    }
+
+    // frees the buffers, chunks can't be used after this
+    public void close() {
+        if(fixedBuffer >= 0) {
+            try {
+                loop.updateBuffer(fixedBuffer, MemorySegment.NULL);
+            } catch(UnixException ex) {
+                // the kernel may still have the arena registered, it must not be freed
+                throw new RuntimeException(ex);
+            }
+        }
+        Native.free(arena);
+    }
+
+    private void issue() {
+        while(!ended) {
+            long remaining = length < 0 ? Long.MAX_VALUE : start + length - nextOffset;
+            if(remaining <= 0) {
+                ended = true;
+                break;
+            }
+            if(freeCount == 0) {
+                break;
+            }
+            Slot slot = slots[free[--freeCount]];
+            slot.seq = nextSeq++;
+            slot.offset = nextOffset;
+            slot.wanted = (int) Math.min(chunkSize, remaining);
+            slot.done = false;
+            // O_DIRECT needs whole blocks, what is read past the range is cut off when delivered
+            int nBytes = (slot.wanted + ALIGNMENT - 1) & -ALIGNMENT;
+            if(slot.read.operation instanceof Operation.ReadFixed readFixed) {
+                readFixed.buf(slot.buffer).nBytes(nBytes).offset(slot.offset);
+            } else {
+                ((Operation.Read) slot.read.operation).buf(slot.buffer).nBytes(nBytes).offset(slot.offset);
+            }
+            window[(int) (slot.seq % window.length)] = slot;
+            nextOffset += slot.wanted;
+            inFlight++;
+            loop.enqueue(slot.read);
+        }
+    }
+
+    private void completed(Slot slot, int result) {
+        inFlight--;
+        slot.done = true;
+        slot.result = result;
+        deliver();
+        issue();
+        maybeFinish();
+    }
+
+    private void deliver() {
+        while(deliverSeq < nextSeq) {
+            int w = (int) (deliverSeq % window.length);
+            Slot slot = window[w];
+            if(!slot.done) {
+                return;
+            }
+            window[w] = null;
+            deliverSeq++;
+            int result = Math.min(slot.result, slot.wanted);
+            if(eof || error != 0 || result <= 0) {
+                // a failed read or one past the end of the file, nothing after it is delivered
+                if(!eof && error == 0 && result < 0) {
+                    error = result;
+                }
+                eof |= result == 0;
+                ended = true;
+                free[freeCount++] = indexOf(slot);
+                continue;
+            }
+            if(result < slot.wanted) {
+                // the file ends before the range does
+                eof = true;
+                ended = true;
+            }
+            bytes += result;
+            callback.invoke(context, loop, this, slot.offset, slot.buffer.asSlice(0L, result), result);
+        }
+    }
+
+    private int indexOf(Slot slot) {
+        return (int) ((slot.buffer.address() - arena.address()) / chunkSize);
+    }
+
+    private void maybeFinish() {
+        if(ended && inFlight == 0 && !finished) {
+            finished = true;
+            callback.invoke(context, loop, this, start + bytes, MemorySegment.NULL, error);
+        }
+    }
+
+}
@@ -0,0 +1,7 @@
+package io.sev.loop.uring;
+
+public interface MessageCallback {
+
+    public abstract void invoke(Object context, UringLoop loop, long payload, int result);
+
+}
@@ -0,0 +1,97 @@
+package io.sev.loop.uring;
+
+import java.util.Arrays;
+
+/*
+ * in-flight completions, indexed by the user_data of their sqe.
+ *
+ * user_data = generation << 32 | slot
+ *
+ * the generation of a slot is bumped every time the slot is released, so a stale
+ * cqe (or a cancel aimed at a completion that already finished) never resolves to
+ * whatever completion reused the slot afterwards. generations stay within 31 bits
+ * and never reach 0, so a registered completion never has a user_data of 0 and
+ * bit 63 is left free.
+ */
+final class SlotTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int GENERATION_MASK = 0x7FFF_FFFF;
+
+    private UringCompletion[] completions;
+
+    private int[] generations;
+
+    private int[] freeSlots;
+
+    private int freeCount;
+
+    SlotTable() {
+        completions = new UringCompletion[INITIAL_CAPACITY];
+        generations = new int[INITIAL_CAPACITY];
+        freeSlots = new int[INITIAL_CAPACITY];
+        Arrays.fill(generations, 1);
+        for(int i = 0; i < INITIAL_CAPACITY; i++) {
+            freeSlots[i] = INITIAL_CAPACITY - 1 - i;
+        }
+        freeCount = INITIAL_CAPACITY;
+    }
+
+    static int slot(long userData) {
+        return (int) userData;
+    }
+
+    static int generation(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    long register(UringCompletion completion) {
+        if(freeCount == 0) {
+            grow();
+        }
+        int slot = freeSlots[--freeCount];
+        completions[slot] = completion;
+        long userData = ((long) generations[slot] << 32) | slot;
+        completion.userData = userData;
+        return userData;
+    }
+
+    UringCompletion get(long userData) {
+        int slot = slot(userData);
+        if(slot < 0 || slot >= completions.length || generations[slot] != generation(userData)) {
+            return null;
+        }
+        return completions[slot];
+    }
+
+    UringCompletion remove(long userData) {
+        UringCompletion completion = get(userData);
+        if(completion == null) {
+            return null;
+        }
+        int slot = slot(userData);
+        completions[slot] = null;
+        int generation = (generations[slot] + 1) & GENERATION_MASK;
+        generations[slot] = generation == 0 ? 1 : generation;
+        freeSlots[freeCount++] = slot;
+        return completion;
+    }
+
+    int size() {
+        return completions.length - freeCount;
+    }
+
+    private void grow() {
+        int oldCapacity = completions.length;
+        int newCapacity = oldCapacity * 2;
+        completions = Arrays.copyOf(completions, newCapacity);
+        generations = Arrays.copyOf(generations, newCapacity);
+        Arrays.fill(generations, oldCapacity, newCapacity, 1);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        for(int i = newCapacity - 1; i >= oldCapacity; i--) {
+            freeSlots[freeCount++] = i;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package io.sev.loop.uring;
+
+import static io.sev.util.unix.Macros.*;
+
+import io.sev.loop.Operation;
+import io.sev.socket.Pipe;
+import io.sev.util.unix.UnixException;
+
+/*
+ * moves data both ways between two connected sockets without it ever leaving the kernel.
+ * each direction owns a pipe and keeps a linked poll and pair of splices in flight:
+ *
+ *   poll(src, POLLIN) --> src --splice--> pipe --splice--> dst
+ *
+ * the second splice is hard linked to the first, so one submission moves a chunk all the
+ * way through. io_uring runs splices on io-wq worker threads, and a splice waiting for
+ * data on an idle socket would hold a worker for as long as it waits, one per direction.
+ * the poll waits without a worker, so the fill splice only starts once src has data. the
+ * flush splice doesn't block: what dst can't take yet stays in the pipe and is drained by
+ * a blocking splice before the next poll is armed. end of stream on src shuts down the
+ * write side of dst. the proxy is done when both directions reached end of stream or one
+ * of them failed, in which case both sockets are shut down.
+ *
+ * SpliceProxy.start(loop, clientFd, upstreamFd, 64 * 1024, null, (ctx, l, proxy, result) -> {
+ *     close(clientFd);
+ *     close(upstreamFd);
+ * });
+ *
+ * the sockets stay open, the pipes are closed by the proxy. owned by the loop's thread.
+ */
+public final class SpliceProxy {
+
+    public interface DoneCallback {
+        // result is 0 when both directions reached end of stream, the first -errno otherwise
+        public abstract void invoke(Object context, UringLoop loop, SpliceProxy proxy, int result);
+    }
+
+    private static final int DEFAULT_PIPE_SIZE = 64 * 1024;
+
+    private final UringLoop loop;
+
+    private final int fdA;
+
+    private final int fdB;
+
+    private final int chunk;
+
+    private final Object context;
+
+    private final DoneCallback callback;
+
+    private final Direction aToB;
+
+    private final Direction bToA;
+
+    private int running = 2;
+
+    private int error = 0;
+
+    private SpliceProxy(UringLoop loop, int fdA, int fdB, int chunk, Object context, DoneCallback callback) throws UnixException {
+        this.loop = loop;
+        this.fdA = fdA;
+        this.fdB = fdB;
+        this.chunk = chunk;
+        this.context = context;
+        this.callback = callback;
+        this.aToB = new Direction(fdA, fdB);
+        Direction bToA;
+        try {
+            bToA = new Direction(fdB, fdA);
+        } catch(UnixException ex) {
+            aToB.pipe.close();
+            throw ex;
+        }
+        this.bToA = bToA;
+    }
+
+    // chunk is the most a single splice moves, pipes are grown to it when it exceeds their default capacity
+    public static SpliceProxy start(UringLoop loop, int fdA, int fdB, int chunk, Object context, DoneCallback callback) throws UnixException {
+        SpliceProxy proxy = new SpliceProxy(loop, fdA, fdB, chunk, context, callback);
+        proxy.aToB.arm();
+        proxy.bToA.arm();
+        return proxy;
+    }
+
+    public long bytesAToB() {
+        return aToB.bytes;
+    }
+
+    public long bytesBToA() {
+        return bToA.bytes;
+    }
+
+    private void fail(int result) {
+        if(error != 0) {
+            return;
+        }
+        error = result;
+        // wakes up a splice still waiting for data on either socket
+        for(int fd : new int[] {fdA, fdB}) {
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Shutdown(fd, SHUT_RDWR))
+                            .callback((ctx, l, completion, res) -> false));
+        }
+    }
+
+    private void finished() {
+        if(--running == 0) {
+            callback.invoke(context, loop, this, error);
+        }
+    }
+
+    private final class Direction {
+
+        private final int dst;
+
+        private final Pipe pipe;
+
+        private final UringCompletion poll;
+
+        private final UringCompletion fill;
+
+        private final UringCompletion flush;
+
+        private final UringCompletion drain;
+
+        private final UringCompletion shutdown;
+
+        // spliced into the pipe, not yet out of it
+        private int inPipe = 0;
+
+        private boolean eof = false;
+
+        private long bytes = 0L;
+
+        private Direction(int src, int dst) throws UnixException {
+            this.dst = dst;
+            this.pipe = Pipe.open(O_CLOEXEC);
+            if(chunk > DEFAULT_PIPE_SIZE) {
+                try {
+                    pipe.setSize(chunk);
+                } catch(UnixException ex) {
+                    pipe.close();
+                    throw ex;
+                }
+            }
+            this.poll = new UringCompletion()
+                    .operation(new Operation.Poll(src, POLLIN))
+                    .callback((ctx, l, completion, result) -> {
+                        // readable, hung up or shut down all start the splice, only an error cancels it
+                        if(result < 0) {
+                            fail(result);
+                        }
+                        return false;
+                    });
+            this.fill = new UringCompletion()
+                    .operation(new Operation.Splice(src, pipe.writeFd, chunk, SPLICE_F_MOVE))
+                    .callback((ctx, l, completion, result) -> {
+                        if(result > 0) {
+                            inPipe += result;
+                        } else if(result == 0) {
+                            eof = true;
+                        } else {
+                            fail(result);
+                        }
+                        return false;
+                    })
+                    .hardLink(true);
+            this.flush = new UringCompletion()
+                    .operation(new Operation.Splice(pipe.readFd, dst, chunk, SPLICE_F_MOVE | SPLICE_F_NONBLOCK))
+                    .callback((ctx, l, completion, result) -> {
+                        // -EAGAIN: the pipe was empty or dst full, whatever is left gets drained
+                        if(result > 0) {
+                            moved(result);
+                        } else if(result < 0 && result != -EAGAIN && result != -ECANCELED) {
+                            fail(result);
+                        }
+                        next();
+                        return false;
+                    });
+            this.drain = new UringCompletion()
+                    .operation(new Operation.Splice(pipe.readFd, dst, 0, SPLICE_F_MOVE))
+                    .callback((ctx, l, completion, result) -> {
+                        if(result > 0) {
+                            moved(result);
+                        } else {
+                            fail(result == 0 ? -EPIPE : result);
+                        }
+                        next();
+                        return false;
+                    });
+            this.shutdown = new UringCompletion()
+                    .operation(new Operation.Shutdown(dst, SHUT_WR))
+                    .callback((ctx, l, completion, result) -> {
+                        finish();
+                        return false;
+                    });
+        }
+
+        private void arm() {
+            loop.enqueueLinked(poll, fill, flush);
+        }
+
+        private void moved(int result) {
+            inPipe -= result;
+            bytes += result;
+        }
+
+        private void next() {
+            if(error != 0) {
+                finish();
+            } else if(inPipe > 0) {
+                ((Operation.Splice) drain.operation).nBytes(inPipe);
+                loop.enqueue(drain);
+            } else if(eof) {
+                loop.enqueue(shutdown);
+            } else {
+                arm();
+            }
+        }
+
+        private void finish() {
+            pipe.close();
+            finished();
+        }
+
+    }
+
+}
@@ -1,17 +1,44 @@
 package io.sev.loop.uring;
 
-import java.util.Random;
+import java.lang.foreign.MemorySegment;
 
 import io.sev.loop.Callback;
 import io.sev.loop.Completion;
 import io.sev.loop.Operation;
 import io.sev.uring.IoUring;
 
+import static io.sev.util.unix.Macros.IORING_CQE_F_MORE;
+import static io.sev.util.unix.Macros.IORING_CQE_F_NOTIF;
+import static io.sev.util.unix.Macros.IORING_NOTIF_USAGE_ZC_COPIED;
+import static io.sev.util.unix.Macros.SPLICE_F_FD_IN_FIXED;
+import static io.sev.util.unix.Macros.SYNC_FILE_RANGE_WAIT_AFTER;
+import static io.sev.util.unix.Macros.SYNC_FILE_RANGE_WAIT_BEFORE;
+import static io.sev.util.unix.Macros.SYNC_FILE_RANGE_WRITE;
+import static io.sev.util.unix.Macros.IORING_FILE_INDEX_ALLOC;
+import static io.sev.util.unix.Macros.IORING_FSYNC_DATASYNC;
+import static io.sev.util.unix.Macros.IORING_MSG_RING_CQE_SKIP;
+
 public final class UringCompletion extends Completion<UringLoop, UringCompletion> {
 
-    private static final Random random = new Random();
+    // user_data of the sqe while in flight, assigned by the loop's slot table
+    long userData = 0L;
+
+    // owned by the loop (timers, cancels), recycled once its callback has run
+    boolean pooled = false;
+
+    // position in the loop's timer pool, and how often it was handed out, see UringLoop.timer()
+    int poolIndex = -1;
+
+    int poolGeneration = 1;
+
+    // flags of the cqe being completed, valid while the callback runs
+    int cqeFlags = 0;
 
-    volatile long id = random.nextLong();
+    // rest of a chain enqueued with UringLoop.enqueueLinked(), cleared once the chain is prepped
+    UringCompletion linkNext = null;
+
+    // link to the next completion of the chain with IOSQE_IO_HARDLINK
+    boolean hardLink = false;
 
     public UringCompletion(Operation operation, Object context, Callback<UringLoop, UringCompletion> callback) {
         super(operation, context, callback);
@@ -20,20 +47,54 @@ public final class UringCompletion extends Completion<UringLoop, UringCompletion
     public UringCompletion() {
     }
 
-    public void rollId() {
-        id = random.nextLong();
-    }
-
     public static UringCompletion of(Operation operation, Object context, Callback<UringLoop, UringCompletion> callback) {
         return new UringCompletion(operation, context, callback);
     }
 
+    // the next completion of the chain runs even if this one fails
+    public UringCompletion hardLink(boolean hardLink) {
+        this.hardLink = hardLink;
+        return this;
+    }
+
+    public int cqeFlags() {
+        return cqeFlags;
+    }
+
+    // a multishot operation that stays armed after this cqe
+    public boolean more() {
+        return (cqeFlags & IORING_CQE_F_MORE) != 0;
+    }
+
+    /*
+     * the second completion of a zero-copy send: the kernel is done with the buffer and it
+     * belongs to the caller again. the first completion carries the result, a first
+     * completion without more() means no notification follows and the buffer is free already.
+     */
+    public boolean notification() {
+        return (cqeFlags & IORING_CQE_F_NOTIF) != 0;
+    }
+
+    // with IORING_SEND_ZC_REPORT_USAGE, the notification of a zero-copy send that fell back to copying
+    public static boolean zcCopied(int notificationResult) {
+        return (notificationResult & IORING_NOTIF_USAGE_ZC_COPIED) != 0;
+    }
+
+    // id of the provided buffer picked by the kernel, see BufferGroup
+    public int bufferId() {
+        return BufferGroup.bufferId(cqeFlags);
+    }
+
     void prep(long sqe) {
-        IoUring.sqeSetData64(sqe, id);
+        IoUring.sqeSetData64(sqe, userData);
         switch(operation.op) {
             case ACCEPT:
                 Operation.Accept acceptOperation = (Operation.Accept) operation;
-                IoUring.prepAccept(sqe, acceptOperation.fd, acceptOperation.addr, acceptOperation.addrLen, acceptOperation.flags, acceptOperation.multishot);
+                if(acceptOperation.direct) {
+                    IoUring.prepAcceptDirect(sqe, acceptOperation.fd, acceptOperation.addr, acceptOperation.addrLen, acceptOperation.flags, acceptOperation.multishot, IORING_FILE_INDEX_ALLOC);
+                } else {
+                    IoUring.prepAccept(sqe, acceptOperation.fd, acceptOperation.addr, acceptOperation.addrLen, acceptOperation.flags, acceptOperation.multishot);
+                }
                 break;
             case CANCEL:
                 Operation.Cancel cancelOperation = (Operation.Cancel) operation;
@@ -41,12 +102,53 @@ public final class UringCompletion extends Completion<UringLoop, UringCompletion
                 break;
             case CLOSE:
                 Operation.Close closeOperation = (Operation.Close) operation;
+                if(closeOperation.fixed) {
+                    IoUring.prepCloseDirect(sqe, closeOperation.fd);
+                    // not IOSQE_FIXED_FILE, the slot is passed as file_index
+                    return;
+                }
                 IoUring.prepClose(sqe, closeOperation.fd);
                 break;
             case CONNECT:
                 Operation.Connect connectOperation = (Operation.Connect) operation;
                 IoUring.prepConnect(sqe, connectOperation.fd, connectOperation.addr, connectOperation.addrLen);
                 break;
+            case MSG_RING:
+                Operation.MsgRing msgRingOperation = (Operation.MsgRing) operation;
+                int msgRingFlags = msgRingOperation.skipCqe ? IORING_MSG_RING_CQE_SKIP : 0;
+                if(msgRingOperation.sendFd) {
+                    IoUring.prepMsgRingFd(sqe, msgRingOperation.fd, msgRingOperation.sourceSlot, msgRingOperation.targetSlot, msgRingOperation.data, msgRingFlags);
+                } else if(msgRingOperation.passFlags) {
+                    IoUring.prepMsgRingCqeFlags(sqe, msgRingOperation.fd, msgRingOperation.len, msgRingOperation.data, msgRingFlags, msgRingOperation.cqeFlags);
+                } else {
+                    IoUring.prepMsgRing(sqe, msgRingOperation.fd, msgRingOperation.len, msgRingOperation.data, msgRingFlags);
+                }
+                break;
+            case FALLOCATE:
+                Operation.Fallocate fallocateOperation = (Operation.Fallocate) operation;
+                IoUring.prepFallocate(sqe, fallocateOperation.fd, fallocateOperation.mode, fallocateOperation.offset, fallocateOperation.len);
+                break;
+            case FSYNC:
+                Operation.Fsync fsyncOperation = (Operation.Fsync) operation;
+                if(fsyncOperation.rangeOnly) {
+                    IoUring.prepSyncFileRange(sqe, fsyncOperation.fd, fsyncOperation.len, fsyncOperation.offset,
+                            SYNC_FILE_RANGE_WAIT_BEFORE | SYNC_FILE_RANGE_WRITE | SYNC_FILE_RANGE_WAIT_AFTER);
+                } else {
+                    IoUring.prepFsync(sqe, fsyncOperation.fd, fsyncOperation.datasync ? IORING_FSYNC_DATASYNC : 0, fsyncOperation.offset, fsyncOperation.len);
+                }
+                break;
+            case MKDIRAT:
+                Operation.MkdirAt mkdirAtOperation = (Operation.MkdirAt) operation;
+                IoUring.prepMkdirat(sqe, mkdirAtOperation.dirFd, mkdirAtOperation.path, mkdirAtOperation.mode);
+                break;
+            case OPENAT:
+                Operation.OpenAt openAtOperation = (Operation.OpenAt) operation;
+                if(openAtOperation.direct) {
+                    IoUring.prepOpenatDirect(sqe, openAtOperation.dirFd, openAtOperation.path, openAtOperation.flags, openAtOperation.mode, IORING_FILE_INDEX_ALLOC);
+                } else {
+                    IoUring.prepOpenat(sqe, openAtOperation.dirFd, openAtOperation.path, openAtOperation.flags, openAtOperation.mode);
+                }
+                break;
             case POLL:
                 Operation.Poll pollOperation = (Operation.Poll) operation;
                 IoUring.prepPollAdd(sqe, pollOperation.fd, pollOperation.pollMask);
@@ -55,32 +157,113 @@ public final class UringCompletion extends Completion<UringLoop, UringCompletion
                 Operation.Read readOperation = (Operation.Read) operation;
                 IoUring.prepRead(sqe, readOperation.fd, readOperation.buf, readOperation.nBytes, readOperation.offset);
                 break;
+            case READ_FIXED:
+                Operation.ReadFixed readFixedOperation = (Operation.ReadFixed) operation;
+                IoUring.prepReadFixed(sqe, readFixedOperation.fd, readFixedOperation.buf, readFixedOperation.nBytes, readFixedOperation.offset, readFixedOperation.bufIndex);
+                break;
+            case READV:
+                Operation.Readv readvOperation = (Operation.Readv) operation;
+                IoUring.prepReadv(sqe, readvOperation.fd, readvOperation.iovecs, readvOperation.count, readvOperation.offset);
+                break;
+            case RECVMSG:
+                Operation.RecvMsg recvMsgOperation = (Operation.RecvMsg) operation;
+                if(recvMsgOperation.multishot) {
+                    IoUring.prepRecvmsgMultishot(sqe, recvMsgOperation.fd, recvMsgOperation.msg, recvMsgOperation.flags);
+                } else {
+                    IoUring.prepRecvmsg(sqe, recvMsgOperation.fd, recvMsgOperation.msg, recvMsgOperation.flags);
+                }
+                if(recvMsgOperation.bufferGroup >= 0) {
+                    IoUring.sqeSetBufferSelect(sqe, recvMsgOperation.bufferGroup);
+                }
+                break;
             case RECV:
                 Operation.Recv recvOperation = (Operation.Recv) operation;
-                IoUring.prepRecv(sqe, recvOperation.fd, recvOperation.buf, recvOperation.len, recvOperation.flags);
+                if(recvOperation.multishot) {
+                    // the kernel fails it with -EINVAL when no buffer group is set
+                    IoUring.prepRecvMultishot(sqe, recvOperation.fd, recvOperation.flags);
+                    IoUring.sqeSetBufferSelect(sqe, recvOperation.bufferGroup);
+                } else if(recvOperation.bufferGroup >= 0) {
+                    IoUring.prepRecv(sqe, recvOperation.fd, MemorySegment.NULL, 0L, recvOperation.flags);
+                    IoUring.sqeSetBufferSelect(sqe, recvOperation.bufferGroup);
+                } else {
+                    IoUring.prepRecv(sqe, recvOperation.fd, recvOperation.buf, recvOperation.len, recvOperation.flags);
+                }
                 break;
             case SEND:
                 Operation.Send sendOperation = (Operation.Send) operation;
-                IoUring.prepSend(sqe, sendOperation.fd, sendOperation.buf, sendOperation.len, sendOperation.flags);
+                if(sendOperation.bufIndex >= 0) {
+                    IoUring.prepSendFixed(sqe, sendOperation.fd, sendOperation.buf, sendOperation.len, sendOperation.flags, sendOperation.bufIndex);
+                } else {
+                    IoUring.prepSend(sqe, sendOperation.fd, sendOperation.buf, sendOperation.len, sendOperation.flags);
+                }
+                break;
+            case SENDMSG:
+                Operation.SendMsg sendMsgOperation = (Operation.SendMsg) operation;
+                IoUring.prepSendmsg(sqe, sendMsgOperation.fd, sendMsgOperation.msg, sendMsgOperation.flags);
+                break;
+            case RENAMEAT:
+                Operation.RenameAt renameAtOperation = (Operation.RenameAt) operation;
+                IoUring.prepRenameat(sqe, renameAtOperation.oldDirFd, renameAtOperation.oldPath, renameAtOperation.newDirFd, renameAtOperation.newPath, renameAtOperation.flags);
+                break;
+            case SEND_ZC:
+                Operation.SendZc sendZcOperation = (Operation.SendZc) operation;
+                if(sendZcOperation.bufIndex >= 0) {
+                    IoUring.prepSendZcFixed(sqe, sendZcOperation.fd, sendZcOperation.buf, sendZcOperation.len, sendZcOperation.flags, sendZcOperation.zcFlags, sendZcOperation.bufIndex);
+                } else {
+                    IoUring.prepSendZc(sqe, sendZcOperation.fd, sendZcOperation.buf, sendZcOperation.len, sendZcOperation.flags, sendZcOperation.zcFlags);
+                }
+                break;
+            case SENDMSG_ZC:
+                Operation.SendMsgZc sendMsgZcOperation = (Operation.SendMsgZc) operation;
+                IoUring.prepSendmsgZc(sqe, sendMsgZcOperation.fd, sendMsgZcOperation.msg, sendMsgZcOperation.flags);
                 break;
             case SHUTDOWN:
                 Operation.Shutdown shutdownOperation = (Operation.Shutdown) operation;
                 IoUring.prepShutdown(sqe, shutdownOperation.fd, shutdownOperation.how);
                 break;
+            case SPLICE:
+                Operation.Splice spliceOperation = (Operation.Splice) operation;
+                IoUring.prepSplice(sqe, spliceOperation.fdIn, spliceOperation.offIn, spliceOperation.fd, spliceOperation.offOut, spliceOperation.nBytes,
+                        spliceOperation.fixedIn ? spliceOperation.flags | SPLICE_F_FD_IN_FIXED : spliceOperation.flags);
+                break;
+            case TEE:
+                Operation.Tee teeOperation = (Operation.Tee) operation;
+                IoUring.prepTee(sqe, teeOperation.fdIn, teeOperation.fd, teeOperation.nBytes,
+                        teeOperation.fixedIn ? teeOperation.flags | SPLICE_F_FD_IN_FIXED : teeOperation.flags);
+                break;
+            case STATX:
+                Operation.Statx statxOperation = (Operation.Statx) operation;
+                IoUring.prepStatx(sqe, statxOperation.dirFd, statxOperation.path, statxOperation.flags, statxOperation.mask, statxOperation.statxbuf);
+                break;
             case TIMER:
                 Operation.Timer timerOperation = (Operation.Timer) operation;
                 IoUring.prepTimeout(sqe, timerOperation.ts, timerOperation.count, timerOperation.flags);
                 break;
+            case UNLINKAT:
+                Operation.UnlinkAt unlinkAtOperation = (Operation.UnlinkAt) operation;
+                IoUring.prepUnlinkat(sqe, unlinkAtOperation.dirFd, unlinkAtOperation.path, unlinkAtOperation.flags);
+                break;
             case WRITE:
                 Operation.Write writeOperation = (Operation.Write) operation;
                 IoUring.prepWrite(sqe, writeOperation.fd, writeOperation.buf, writeOperation.nBytes, writeOperation.offset);
                 break;
+            case WRITEV:
+                Operation.Writev writevOperation = (Operation.Writev) operation;
+                IoUring.prepWritev(sqe, writevOperation.fd, writevOperation.iovecs, writevOperation.count, writevOperation.offset);
+                break;
+            case WRITE_FIXED:
+                Operation.WriteFixed writeFixedOperation = (Operation.WriteFixed) operation;
+                IoUring.prepWriteFixed(sqe, writeFixedOperation.fd, writeFixedOperation.buf, writeFixedOperation.nBytes, writeFixedOperation.offset, writeFixedOperation.bufIndex);
+                break;
             case NOP:
                 IoUring.prepNop(sqe);
                 break;
             default:
                 throw new UnsupportedOperationException();
         }
+        if(operation instanceof Operation.FdOperation<?> fdOperation && fdOperation.fixed) {
+            IoUring.sqeSetFixedFile(sqe);
+        }
     }
 
     final boolean complete(UringLoop loop, int res) {
@@ -2,53 +2,416 @@ package io.sev.loop.uring;
 
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.SegmentAllocator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import io.sev.Native;
 import io.sev.loop.Callback;
 import io.sev.loop.Loop;
 import io.sev.loop.Operation;
+import io.sev.loop.timer.TimingWheel;
+import io.sev.loop.timer.WheelTimer;
+import io.sev.queue.IntrusiveQueue;
+import io.sev.queue.MpscQueue;
+import io.sev.socket.Socket;
 import io.sev.uring.IoUring;
+import io.sev.uring.UringConfig;
 import io.sev.util.unix.UnixException;
 import io.sev.util.value.BooleanWrapper;
 import io.sev.util.value.LongWrapper;
 
-import static io.sev.uring.IoUringCQE.*;
+import static io.sev.util.iovec.IovecUtil.*;
 import static io.sev.util.timer.TimespecUtil.*;
 import static io.sev.util.unix.Macros.*;
 import static io.sev.Native.*;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
 
 public class UringLoop extends Loop<UringLoop, UringCompletion> {
 
     private static final SegmentAllocator callocator = Native.callocator();
 
-    private static final int NCQES = 128;
+    private static final long WHEEL_TICK_NS = 1_000_000L;
+
+    // user_data of sqes owned by the loop itself, the slot table never sets bit 63
+    private static final long WHEEL_TIMEOUT_USER_DATA = Long.MIN_VALUE | 1L;
+
+    private static final long WHEEL_UPDATE_USER_DATA = Long.MIN_VALUE | 2L;
+
+    private static final long WAKEUP_USER_DATA = Long.MIN_VALUE | 3L;
+
+    private static final long LINK_TIMEOUT_USER_DATA = Long.MIN_VALUE | 4L;
+
+    // user_data of a file sent by another loop, the low 62 bits carry the sender's tag
+    private static final long FILE_MESSAGE_TAG = Long.MIN_VALUE | (1L << 62);
+
+    private static final long FILE_MESSAGE_TAG_MASK = (1L << 62) - 1L;
+
+    // user_data of a message posted by another loop, the low 61 bits carry its payload
+    private static final long MESSAGE_TAG = Long.MIN_VALUE | (1L << 61);
+
+    private static final long MESSAGE_TAG_MASK = (1L << 61) - 1L;
 
     private final IoUring ring;
 
-    private final Map<Long, UringCompletion> inUring = new HashMap<>();
+    private final SlotTable inUring = new SlotTable();
+
+    private final IntrusiveQueue<UringCompletion> timerPool = new IntrusiveQueue<>();
+
+    private final IntrusiveQueue<UringCompletion> cancelPool = new IntrusiveQueue<>();
+
+    // every timer completion ever made, by poolIndex
+    private final List<UringCompletion> timers = new ArrayList<>();
+
+    private final List<MemorySegment> timerTimespecs = new ArrayList<>();
+
+    private final List<BufferGroup> bufferGroups = new ArrayList<>();
+
+    private final MemorySegment nowTs = callocator.allocate(TIMESPEC_LAYOUT);
+
+    private long now;
+
+    private final TimingWheel<UringLoop> wheel;
+
+    // a single kernel timeout, armed for the next deadline of the wheel
+    private final MemorySegment wheelTs = callocator.allocate(TIMESPEC_LAYOUT);
+
+    /*
+     * timespecs of Operation.deadline() link timeouts, one per sqe of the sq array. the kernel
+     * copies the timespec when it consumes the sqe, before the sqe can be handed out again.
+     */
+    private final MemorySegment linkTimeoutTs;
+
+    private boolean wheelArmed = false;
+
+    private long wheelDeadline = Long.MAX_VALUE;
+
+    // work handed over by other threads, see enqueueAsync() and execute()
+    private final MpscQueue<UringCompletion> remoteCompletions = new MpscQueue<>();
+
+    private final MpscQueue<Task> remoteTasks = new MpscQueue<>();
+
+    // set while the loop is about to block in the kernel, producers only write the eventfd then
+    private final AtomicBoolean parked = new AtomicBoolean(false);
+
+    private volatile boolean stopped = false;
+
+    private final int wakeupFd;
+
+    private final MemorySegment wakeupBuf = callocator.allocate(8L);
+
+    private boolean wakeupArmed = false;
+
+    private Object messageContext = null;
+
+    private MessageCallback messageCallback = null;
+
+    private Object fileContext = null;
+
+    private MessageCallback fileCallback = null;
+
+    // active operations, published for other threads once per iteration
+    private final AtomicLong load = new AtomicLong(0L);
+
+    // see UringConfig.submitBatch
+    private final int submitBatch;
+
+    // see UringConfig.maxUnqueued
+    private final int maxUnqueued;
 
-    private final MemorySegment cqes = callocator.allocate(IO_URING_CQE_LAYOUT, NCQES);
+    private long rejected = 0L;
 
-    private UringLoop() throws UnixException {
-            ring = IoUring.init(callocator);
+    private static final class Task extends IntrusiveQueue.Element<Task> {
+        private final Consumer<UringLoop> task;
+        private Task(Consumer<UringLoop> task) {
+            this.task = task;
+        }
+    }
+
+    private UringLoop(UringConfig config) throws UnixException {
+            ring = IoUring.init(config, callocator);
+            updateTime();
+            wheel = new TimingWheel<>(WHEEL_TICK_NS, now);
+            wakeupFd = eventfd(0, EFD_CLOEXEC);
+            linkTimeoutTs = callocator.allocate(TIMESPEC_LAYOUT, ring.sqEntries());
+            submitBatch = Math.min(config.submitBatch, ring.sqEntries());
+            maxUnqueued = config.maxUnqueued;
     }
 
     public static UringLoop init() throws UnixException {
-        return new UringLoop();
+        return new UringLoop(new UringConfig());
+    }
+
+    public static UringLoop init(UringConfig config) throws UnixException {
+        return new UringLoop(config);
+    }
+
+    // operations in flight or waiting for an sqe
+    public long active() {
+        return active + unqueuedCompletions.size();
+    }
+
+    // setup flags of the ring, modes unsupported by the kernel are missing
+    public int ringFlags() {
+        return ring.flags();
     }
 
     public void deinit() {
-        free(cqes);
+        for(MemorySegment ts : timerTimespecs) {
+            free(ts);
+        }
+        free(nowTs);
+        free(wheelTs);
+        free(linkTimeoutTs);
+        for(BufferGroup bufferGroup : bufferGroups) {
+            bufferGroup.deinit();
+        }
         ring.queueExit();
         free(ring.ringAddress());
+        Socket.close(wakeupFd);
+        free(wakeupBuf);
+    }
+
+    /*
+     * registers count buffers of size bytes as a new provided buffer group, to be used
+     * with Operation.Recv.bufferGroup(group.id())
+     */
+    public BufferGroup bufferGroup(int count, int size) throws UnixException {
+        BufferGroup bufferGroup = new BufferGroup(ring, bufferGroups.size(), count, size);
+        bufferGroups.add(bufferGroup);
+        return bufferGroup;
+    }
+
+    /*
+     * registered buffers, used by Operation.ReadFixed, Operation.WriteFixed and
+     * Operation.Send with a bufIndex. buffer i gets index i.
+     */
+    public void registerBuffers(MemorySegment... buffers) throws UnixException {
+        MemorySegment iovecs = iovecs(callocator, buffers);
+        try {
+            ring.registerBuffers(iovecs, buffers.length);
+        } finally {
+            free(iovecs);
+        }
+    }
+
+    // an empty table of count buffers, filled in later with updateBuffer()
+    public void registerBuffersSparse(int count) throws UnixException {
+        ring.registerBuffersSparse(count);
+    }
+
+    // MemorySegment.NULL clears the index
+    public void updateBuffer(int index, MemorySegment buffer) throws UnixException {
+        MemorySegment iovecs = iovecs(1, callocator);
+        try {
+            setIovec(iovecs, 0, buffer);
+            ring.updateBuffers(index, iovecs, 1);
+        } finally {
+            free(iovecs);
+        }
+    }
+
+    public void unregisterBuffers() throws UnixException {
+        ring.unregisterBuffers();
+    }
+
+    /*
+     * registered file table, operations with fixed(true) pass a slot of it instead of an fd.
+     * accepts and opens with direct(true) allocate their slot from it and never create a
+     * regular fd. fd -1 leaves a slot empty.
+     */
+    public void registerFiles(int... fds) throws UnixException {
+        MemorySegment fdsSegment = callocator.allocate(JAVA_INT, fds.length);
+        try {
+            MemorySegment.copy(fds, 0, fdsSegment, JAVA_INT, 0L, fds.length);
+            ring.registerFiles(fdsSegment, fds.length);
+        } finally {
+            free(fdsSegment);
+        }
+    }
+
+    public void registerFilesSparse(int count) throws UnixException {
+        ring.registerFilesSparse(count);
+    }
+
+    // installs fds into the slots starting at offset
+    public void updateFiles(int offset, int... fds) throws UnixException {
+        MemorySegment fdsSegment = callocator.allocate(JAVA_INT, fds.length);
+        try {
+            MemorySegment.copy(fds, 0, fdsSegment, JAVA_INT, 0L, fds.length);
+            ring.registerFilesUpdate(offset, fdsSegment, fds.length);
+        } finally {
+            free(fdsSegment);
+        }
+    }
+
+    public void unregisterFiles() throws UnixException {
+        ring.unregisterFiles();
+    }
+
+    // restricts the slots direct descriptors are allocated from, the rest are left for updateFiles()
+    public void fileAllocRange(int offset, int count) throws UnixException {
+        ring.registerFileAllocRange(offset, count);
+    }
+
+    /*
+     * loop to loop messages over IORING_OP_MSG_RING. the kernel posts them straight into the
+     * target ring's cq, where they are picked up by the target's normal completion pass, no
+     * queue or lock is shared between the loops. the sending loop gets a regular completion
+     * with 0 or -errno once the message is posted.
+     *
+     * target.onMessage(null, (ctx, loop, payload, value) -> ...);
+     * loop.message(target, key, 0, null, (ctx, l, completion, result) -> false);
+     *
+     * messages are told apart from the target's own completions by their user_data, like
+     * every sqe the loop owns: bit 63 set, bit 62 clear and bit 61 set. payloads are
+     * limited to the low 61 bits. files need a registered file table on both loops.
+     */
+    public int ringFd() {
+        return ring.ringFd();
+    }
+
+    // called with the payload and value of every message posted to this loop
+    public void onMessage(Object context, MessageCallback callback) {
+        this.messageContext = context;
+        this.messageCallback = callback;
+    }
+
+    // called with the tag and the slot, or -errno, of every file sent to this loop
+    public void onFile(Object context, MessageCallback callback) {
+        this.fileContext = context;
+        this.fileCallback = callback;
+    }
+
+    public UringCompletion message(UringLoop target, long payload, int value, Object context,
+            Callback<UringLoop, UringCompletion> callback) {
+        Operation msgRingOperation = new Operation.MsgRing(target.ringFd(), MESSAGE_TAG | (payload & MESSAGE_TAG_MASK), value);
+        UringCompletion completion = UringCompletion.of(msgRingOperation, context, callback);
+        enqueue(completion);
+        return completion;
+    }
+
+    /*
+     * installs fixed file slot of this loop into targetSlot of target's file table,
+     * IORING_FILE_INDEX_ALLOC picks a free one. the file stays in this loop's table as well
+     * and is usually closed here once the send completed. tag is limited to 62 bits.
+     */
+    public UringCompletion sendFile(UringLoop target, int slot, int targetSlot, long tag, Object context,
+            Callback<UringLoop, UringCompletion> callback) {
+        Operation msgRingOperation = new Operation.MsgRing(target.ringFd(), FILE_MESSAGE_TAG | (tag & FILE_MESSAGE_TAG_MASK), 0)
+                                        .sendFd(slot, targetSlot);
+        UringCompletion completion = UringCompletion.of(msgRingOperation, context, callback);
+        enqueue(completion);
+        return completion;
+    }
+
+    /*
+     * cross-thread entry points. enqueueAsync() and execute() may be called from any
+     * thread, the completion or task is picked up by the loop's own thread on its next
+     * iteration. the loop is only woken up, by a write to its eventfd, when it is
+     * actually parked in the kernel.
+     */
+    public void enqueueAsync(UringCompletion completion) {
+        remoteCompletions.offer(completion);
+        wakeup();
+    }
+
+    public void execute(Consumer<UringLoop> task) {
+        remoteTasks.offer(new Task(task));
+        wakeup();
+    }
+
+    // makes runUntilStopped() return, may be called from any thread
+    public void stop() {
+        stopped = true;
+        wakeup();
+    }
+
+    // operations in flight as of the last iteration, may be called from any thread
+    public long load() {
+        return load.get();
+    }
+
+    /*
+     * runs until stop(), parking in the kernel while there is nothing to do. tasks handed
+     * over before stop() still run, completions handed over by enqueueAsync() that never
+     * reached the kernel complete with -ECANCELED. operations already in flight are left
+     * as they are.
+     */
+    public void runUntilStopped() {
+        try {
+            while(!stopped) {
+                flush(1, null, null);
+            }
+        } catch(UnixException ex) {
+            throw new RuntimeException(ex);
+        }
+        Task task;
+        while((task = remoteTasks.poll()) != null) {
+            task.task.accept(this);
+        }
+        UringCompletion completion;
+        while((completion = remoteCompletions.poll()) != null) {
+            fail(completion, -ECANCELED);
+        }
+    }
+
+    private void wakeup() {
+        if(parked.get() && parked.compareAndSet(true, false)) {
+            try {
+                eventfdWrite(wakeupFd, 1L);
+            } catch(UnixException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    // false if there is remote work and the loop must not block
+    private boolean park() {
+        if(!wakeupArmed && !armWakeup()) {
+            return false;
+        }
+        parked.set(true);
+        // producers offer before they look at parked, we set parked before we look at the queues
+        if(stopped || !remoteTasks.isEmpty() || !remoteCompletions.isEmpty()) {
+            parked.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean armWakeup() {
+        long sqe = ring.getSqe();
+        if(sqe == 0L) {
+            return false;
+        }
+        IoUring.prepRead(sqe, wakeupFd, wakeupBuf, 8, 0L);
+        IoUring.sqeSetData64(sqe, WAKEUP_USER_DATA);
+        wakeupArmed = true;
+        return true;
+    }
+
+    private void drainRemote() {
+        Task task;
+        while((task = remoteTasks.poll()) != null) {
+            task.task.accept(this);
+        }
+        UringCompletion completion;
+        while((completion = remoteCompletions.poll()) != null) {
+            enqueue(completion);
+        }
+    }
+
+    private boolean hasWork() {
+        return active > 0 || !unqueuedCompletions.isEmpty() || !remoteTasks.isEmpty() || !remoteCompletions.isEmpty();
     }
 
     @Override
     public void runAll() {
         try {
-            while(active > 0 || !unqueuedCompletions.isEmpty()) {
+            while(hasWork()) {
                 flush(1, null, null);
             }
         } catch(UnixException ex) {
@@ -59,7 +422,7 @@ public class UringLoop extends Loop<UringLoop, UringCompletion> {
     @Override
     public void runOnce() {
         try {
-            if(active > 0 || !unqueuedCompletions.isEmpty()) {
+            if(hasWork()) {
                 flush(1, null, null);
             }
         } catch(UnixException ex) {
@@ -72,54 +435,391 @@ public class UringLoop extends Loop<UringLoop, UringCompletion> {
         tryEnqueuePrep(completion, false);
     }
 
+    /*
+     * prepares all of completions and submits them with a single io_uring_enter, instead
+     * of leaving them for the next iteration. completions that don't fit the submission
+     * queue wait for space like with enqueue().
+     */
+    @Override
+    public void enqueueAll(UringCompletion[] completions) {
+        for(UringCompletion completion : completions) {
+            tryEnqueuePrep(completion, false);
+        }
+        submit();
+    }
+
+    // empties completions, see enqueueAll(UringCompletion[])
+    @Override
+    public void enqueueAll(IntrusiveQueue<UringCompletion> completions) {
+        UringCompletion completion;
+        while((completion = completions.poll()) != null) {
+            tryEnqueuePrep(completion, false);
+        }
+        submit();
+    }
+
+    /*
+     * hands the prepared sqes to the kernel without waiting for anything and returns how
+     * many it took. every iteration of the loop submits anyway, this gets operations
+     * started before the current callbacks are done.
+     */
+    public int submit() {
+        if(ring.sqReady() == 0) {
+            return 0;
+        }
+        while(true) {
+            try {
+                return ring.submit();
+            } catch(UnixException ex) {
+                int errno = ex.errno();
+                if(errno == EINTR) {
+                    continue;
+                }
+                // no room for more completions right now, the sqes go with the next iteration
+                if(errno == EBUSY || errno == EAGAIN) {
+                    return 0;
+                }
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    // sqes prepared and not yet consumed by the kernel
+    public int unsubmitted() {
+        return ring.sqReady();
+    }
+
+    // completions waiting for room in the submission queue
+    public int unqueued() {
+        return unqueuedCompletions.size();
+    }
+
+    // completions failed with -EBUSY because UringConfig.maxUnqueued were already waiting
+    public long rejected() {
+        return rejected;
+    }
+
+    /*
+     * enqueues completions as one chain of linked sqes: each operation is only started by the
+     * kernel once the one before it completed, without a trip through the loop in between.
+     * the whole chain gets its sqes at once or waits, as a whole, for enough space.
+     *
+     * every completion gets its own callback. when a link fails, or a read or recv comes
+     * up short, the rest of the chain completes with -ECANCELED, unless the failed link was
+     * marked with hardLink(true). returning true from a callback re-enqueues that completion
+     * on its own, not the chain.
+     *
+     * loop.enqueueLinked(
+     *     new UringCompletion().operation(new Operation.Write().fd(fd).buf(buf).nBytes(n)).callback(onWrite),
+     *     new UringCompletion().operation(new Operation.Close().fd(fd)).callback(onClose));
+     */
+    public void enqueueLinked(UringCompletion... completions) {
+        if(completions.length == 0) {
+            return;
+        }
+        for(int i = 0; i < completions.length - 1; i++) {
+            completions[i].linkNext = completions[i + 1];
+        }
+        completions[completions.length - 1].linkNext = null;
+        int sqes = sqesNeeded(completions[0]);
+        if(sqes > ring.sqEntries()) {
+            completions[0].linkNext = null;
+            throw new IllegalArgumentException("chain of " + sqes + " sqes is longer than the submission queue");
+        }
+        enqueue(completions[0]);
+    }
+
+    /*
+     * tests only: gives completions, linked as by enqueueLinked(), the treatment enqueue()
+     * gives them once the kernel takes no more sqes, so maxUnqueued can be checked without
+     * overloading a real ring.
+     */
+    void deferLinked(UringCompletion... completions) {
+        for(int i = 0; i < completions.length - 1; i++) {
+            completions[i].linkNext = completions[i + 1];
+        }
+        completions[completions.length - 1].linkNext = null;
+        defer(completions[0], false);
+    }
+
     private boolean tryEnqueuePrep(UringCompletion completion, boolean offerFirst) {
         if(completion == null) {
             return false;
         }
+        if(completion.linkNext != null || completion.operation.deadlineNs > 0L) {
+            return tryEnqueueChain(completion, offerFirst);
+        }
         long sqe = ring.getSqe();
         if(sqe == 0L) {
-            //no space in submission queue, put in unqueued for now
-            if(offerFirst) {
-                unqueuedCompletions.offerFirst(completion);
-            } else {
-                unqueuedCompletions.offer(completion);
-            }
-            return false;
+            // the submission queue is full, hand it to the kernel and try again
+            submit();
+            sqe = ring.getSqe();
         }
-        while(inUring.containsKey(completion.id)) {
-            completion.rollId();
+        if(sqe == 0L) {
+            // the kernel didn't take any, put in unqueued for now
+            return defer(completion, offerFirst);
         }
+        inUring.register(completion);
         completion.prep(sqe);
-        inUring.put(completion.id, completion);
         active++;
+        submitIfFull();
+        return true;
+    }
+
+    /*
+     * parks a completion, or the head of a chain, until there are sqes for it. past
+     * maxUnqueued new ones are failed instead, completions of the loop itself and ones
+     * that were already waiting are always kept.
+     */
+    private boolean defer(UringCompletion completion, boolean offerFirst) {
+        if(offerFirst) {
+            unqueuedCompletions.offerFirst(completion);
+        } else if(maxUnqueued > 0 && unqueuedCompletions.size() >= maxUnqueued && !completion.pooled) {
+            reject(completion);
+        } else {
+            unqueuedCompletions.offer(completion);
+        }
+        return false;
+    }
+
+    private void reject(UringCompletion head) {
+        rejected++;
+        // not re-enqueued whatever the callback returns, that is what overloaded the loop
+        fail(head, -EBUSY);
+    }
+
+    // completes head and the rest of its chain with res, without going through the kernel
+    private void fail(UringCompletion head, int res) {
+        UringCompletion curr = head;
+        while(curr != null) {
+            UringCompletion next = curr.linkNext;
+            curr.linkNext = null;
+            curr.cqeFlags = 0;
+            curr.complete(this, res);
+            curr = next;
+        }
+    }
+
+    private void submitIfFull() {
+        if(submitBatch > 0 && ring.sqReady() >= submitBatch) {
+            submit();
+        }
+    }
+
+    // a completion with a deadline is a chain of its sqe and a link timeout
+    private static int sqesNeeded(UringCompletion head) {
+        int sqes = 0;
+        for(UringCompletion curr = head; curr != null; curr = curr.linkNext) {
+            sqes += curr.operation.deadlineNs > 0L ? 2 : 1;
+        }
+        return sqes;
+    }
+
+    private boolean tryEnqueueChain(UringCompletion head, boolean offerFirst) {
+        int sqes = sqesNeeded(head);
+        if(ring.sqSpaceLeft() < sqes) {
+            submit();
+        }
+        if(ring.sqSpaceLeft() < sqes) {
+            // the chain is only ever submitted whole, its head waits in unqueued
+            return defer(head, offerFirst);
+        }
+        UringCompletion curr = head;
+        while(curr != null) {
+            long sqe = ring.getSqe();
+            inUring.register(curr);
+            curr.prep(sqe);
+            active++;
+            UringCompletion next = curr.linkNext;
+            long deadlineNs = curr.operation.deadlineNs;
+            if(deadlineNs > 0L) {
+                IoUring.sqeSetLink(sqe, curr.hardLink);
+                sqe = ring.getSqe();
+                MemorySegment ts = linkTimeoutTs.asSlice((long) ring.sqeIndex(sqe) * TIMESPEC_LAYOUT.byteSize(), TIMESPEC_LAYOUT);
+                setTimespec(ts, deadlineNs);
+                IoUring.prepLinkTimeout(sqe, ts, 0);
+                IoUring.sqeSetData64(sqe, LINK_TIMEOUT_USER_DATA);
+            }
+            if(next != null) {
+                IoUring.sqeSetLink(sqe, curr.hardLink);
+            }
+            curr.linkNext = null;
+            curr = next;
+        }
+        // only once the chain is complete, a submit in the middle would cut its links
+        submitIfFull();
         return true;
     }
 
     @Override
     public void cancel(UringCompletion completion, Callback<UringLoop, UringCompletion> callback) {
-        Operation cancelOperation = new Operation.Cancel(completion.id);
-        UringCompletion cancelCompletion = UringCompletion.of(cancelOperation, null, callback);
+        UringCompletion cancelCompletion = cancelCompletion(callback);
+        ((Operation.Cancel) cancelCompletion.operation).userData(completion.userData);
         enqueue(cancelCompletion);
     }
 
     @Override
-    public void timer(long ns, Object context,
+    public void cancelTimer(long timer, Callback<UringLoop, UringCompletion> callback) {
+        int index = (int) timer;
+        int generation = (int) (timer >>> 32);
+        UringCompletion timerCompletion = index >= 0 && index < timers.size() ? timers.get(index) : null;
+        if(timerCompletion == null || timerCompletion.poolGeneration != generation) {
+            // fired or cancelled, its completion may already belong to another timer
+            UringCompletion cancelCompletion = cancelCompletion(callback);
+            cancelCompletion.complete(this, -ENOENT);
+            release(cancelCompletion);
+            return;
+        }
+        cancel(timerCompletion, callback);
+    }
+
+    private UringCompletion cancelCompletion(Callback<UringLoop, UringCompletion> callback) {
+        UringCompletion cancelCompletion = cancelPool.poll();
+        if(cancelCompletion == null) {
+            cancelCompletion = UringCompletion.of(new Operation.Cancel(), null, null);
+            cancelCompletion.pooled = true;
+        }
+        cancelCompletion.callback(callback);
+        return cancelCompletion;
+    }
+
+    // the handle is generation << 32 | poolIndex, the generation moves on when the timer is recycled
+    @Override
+    public long timer(long ns, Object context,
             Callback<UringLoop, UringCompletion> callback) {
-        MemorySegment nextTs = timespecNext(ns, callocator);
-        Operation timerOperation = new Operation.Timer()
-                                .ts(nextTs)
-                                .count(0)
-                                .flags(IORING_TIMEOUT_ABS);
-        Callback<UringLoop, UringCompletion> timerCallback = (ctx, loop, completion, result) -> {
-            free(nextTs);
-            callback.invoke(ctx, loop, completion, result);
-            return false;
-        };
-        UringCompletion timerCompletion = new UringCompletion()
-                                            .operation(timerOperation)
-                                            .context(context)
-                                            .callback(timerCallback);
+        UringCompletion timerCompletion = timerPool.poll();
+        if(timerCompletion == null) {
+            MemorySegment ts = callocator.allocate(TIMESPEC_LAYOUT);
+            timerTimespecs.add(ts);
+            Operation timerOperation = new Operation.Timer()
+                                    .ts(ts)
+                                    .count(0)
+                                    .flags(IORING_TIMEOUT_ABS);
+            timerCompletion = UringCompletion.of(timerOperation, null, null);
+            timerCompletion.pooled = true;
+            timerCompletion.poolIndex = timers.size();
+            timers.add(timerCompletion);
+        }
+        timespecNext(ns, ((Operation.Timer) timerCompletion.operation).ts);
+        timerCompletion.context(context)
+                       .callback(callback);
         enqueue(timerCompletion);
+        return ((long) timerCompletion.poolGeneration << 32) | timerCompletion.poolIndex;
+    }
+
+    private void release(UringCompletion completion) {
+        completion.context(null)
+                  .callback(null);
+        if(completion.operation.op == Operation.Op.TIMER) {
+            // invalidates the handle timer() returned for it
+            int generation = (completion.poolGeneration + 1) & 0x7FFF_FFFF;
+            completion.poolGeneration = generation == 0 ? 1 : generation;
+            timerPool.offerFirst(completion);
+        } else {
+            cancelPool.offerFirst(completion);
+        }
+    }
+
+    // CLOCK_MONOTONIC time in ns, cached once per loop iteration
+    public long now() {
+        return now;
+    }
+
+    public void updateTime() {
+        try {
+            clockGetTime(CLOCK_MONOTONIC, nowTs);
+        } catch(UnixException ex) {
+            throw new RuntimeException(ex);
+        }
+        now = toNanos(nowTs);
+    }
+
+    /*
+     * wheel timers: O(1) schedule, touch and unschedule in user space, with one kernel
+     * timeout armed for the earliest deadline of the whole wheel. deadlines are rounded
+     * up to the next millisecond tick.
+     */
+    public void schedule(WheelTimer<UringLoop> timer, long delayNs) {
+        schedule(timer, delayNs, 0L);
+    }
+
+    public void schedule(WheelTimer<UringLoop> timer, long delayNs, long periodNs) {
+        updateTime();
+        wheel.schedule(timer, now, delayNs, periodNs);
+        armWheel();
+    }
+
+    // push the deadline of a scheduled timer back to now() plus the delay it was scheduled with
+    public void touch(WheelTimer<UringLoop> timer) {
+        wheel.touch(timer, now);
+    }
+
+    public boolean unschedule(WheelTimer<UringLoop> timer) {
+        return wheel.cancel(timer);
+    }
+
+    private void runTimers() {
+        updateTime();
+        if(!wheel.isEmpty()) {
+            wheel.advance(now, this);
+        }
+        armWheel();
+    }
+
+    private void armWheel() {
+        long deadline = wheel.nextDeadline();
+        if(!wheelArmed && deadline == Long.MAX_VALUE) {
+            return;
+        }
+        // a later deadline is left alone, the timeout fires early and gets re-armed
+        if(wheelArmed && (deadline == wheelDeadline || (deadline > wheelDeadline && deadline != Long.MAX_VALUE))) {
+            return;
+        }
+        long sqe = ring.getSqe();
+        if(sqe == 0L) {
+            // retried on the next iteration
+            return;
+        }
+        if(!wheelArmed) {
+            setTimespec(wheelTs, deadline);
+            IoUring.prepTimeout(sqe, wheelTs, 0, IORING_TIMEOUT_ABS);
+            IoUring.sqeSetData64(sqe, WHEEL_TIMEOUT_USER_DATA);
+            wheelArmed = true;
+            active++;
+        } else if(deadline == Long.MAX_VALUE) {
+            // wheel is empty, don't keep the loop alive for nothing
+            IoUring.prepTimeoutRemove(sqe, WHEEL_TIMEOUT_USER_DATA, 0);
+            IoUring.sqeSetData64(sqe, WHEEL_UPDATE_USER_DATA);
+        } else {
+            setTimespec(wheelTs, deadline);
+            IoUring.prepTimeoutUpdate(sqe, wheelTs, WHEEL_TIMEOUT_USER_DATA, IORING_TIMEOUT_ABS);
+            IoUring.sqeSetData64(sqe, WHEEL_UPDATE_USER_DATA);
+        }
+        wheelDeadline = deadline;
+    }
+
+    private void completeInternal(long userData, int result) {
+        if(userData == WHEEL_TIMEOUT_USER_DATA) {
+            wheelArmed = false;
+            wheelDeadline = Long.MAX_VALUE;
+            active--;
+        }
+        if(userData == WAKEUP_USER_DATA) {
+            // re-armed before the loop parks again
+            wakeupArmed = false;
+        }
+        if((userData & FILE_MESSAGE_TAG) == FILE_MESSAGE_TAG) {
+            if(fileCallback != null) {
+                fileCallback.invoke(fileContext, this, userData & FILE_MESSAGE_TAG_MASK, result);
+            }
+        } else if((userData & MESSAGE_TAG) == MESSAGE_TAG) {
+            // posted by another loop
+            if(messageCallback != null) {
+                messageCallback.invoke(messageContext, this, userData & MESSAGE_TAG_MASK, result);
+            }
+        }
+        // LINK_TIMEOUT_USER_DATA: -ETIME when it cancelled its operation, -ECANCELED otherwise
+        // WHEEL_UPDATE_USER_DATA: a failed update or removal means the timeout already completed
     }
 
     public void runForNs(long ns) {
@@ -165,57 +865,124 @@ public class UringLoop extends Loop<UringLoop, UringCompletion> {
     }
 
     private void flush(int waitNr, LongWrapper timeouts, BooleanWrapper etime) throws UnixException {
-        flushSubmissions(waitNr, timeouts, etime);
+        drainRemote();
+        // completions waiting for sqes must not wait for a completion that may never come
+        if(waitNr > 0 && unqueuedCompletions.isEmpty() && park()) {
+            try {
+                flushSubmissions(waitNr, timeouts, etime);
+            } finally {
+                parked.set(false);
+            }
+        } else {
+            flushSubmissions(0, timeouts, etime);
+        }
         flushCompletions(0, timeouts, etime);
+        runTimers();
         enqueueUnqueued();
+        load.lazySet(active);
     }
     
+    /*
+     * reap completions in place from the mapped cq ring. the kernel is only entered
+     * when we have to wait, or when completions are stuck in the overflow list.
+     */
     private void flushCompletions(int waitNr, LongWrapper timeouts, BooleanWrapper etime) throws UnixException {
         int waitRemaining = waitNr;
         while(true) {
-            int completed = 0;
-            try {
-                completed = ring.copyCqes(cqes, NCQES, waitRemaining);
-            } catch (UnixException ex) {
-                if(ex.errno() == EINTR) {
-                    continue;
-                } else {
-                    throw ex;
+            int head = ring.cqHead();
+            int tail = ring.cqTail();
+            if(head == tail) {
+                if(waitRemaining == 0 && !ring.cqNeedsFlush()) {
+                    break;
+                }
+                getEvents(waitRemaining);
+                tail = ring.cqTail();
+                if(head == tail) {
+                    break;
                 }
             }
+            int completed = tail - head;
             if(completed > waitRemaining) {
                 waitRemaining = 0;
             } else {
                 waitRemaining -= completed;
             }
-            for(int i = 0; i < completed; i++) {
-                long userData = getUserData(cqes, i);
-                int result = getResult(cqes, i);
+            for(; head != tail; head++) {
+                long userData = ring.cqeUserData(head);
+                int result = ring.cqeResult(head);
+                int flags = ring.cqeFlags(head);
+                if(userData < 0L) {
+                    completeInternal(userData, result);
+                    continue;
+                }
                 if(userData == 0L) {
-                    System.out.println("timeout cqe detected");
                     if(timeouts != null) {
                         timeouts.decrement();
                     }
-                    if(result == -ETIME) {
-                        System.out.println("timeout completed with ETIME");
-                        if(etime != null) {
-                            etime.set(true);
-                        }
+                    if(result == -ETIME && etime != null) {
+                        etime.set(true);
+                    }
+                    continue;
+                }
+                if((flags & IORING_CQE_F_MORE) != 0) {
+                    // multishot, or a zero-copy send whose notification is still to come,
+                    // the completion keeps its slot until a cqe without F_MORE
+                    UringCompletion completion = inUring.get(userData);
+                    if(completion != null) {
+                        completion.cqeFlags = flags;
+                        consumeBuffer(completion, flags, result);
+                        completion.complete(this, result);
                     }
                     continue;
                 }
                 UringCompletion completion = inUring.remove(userData);
+                if(completion == null) {
+                    // stale cqe for a slot that has since been released
+                    continue;
+                }
+                completion.cqeFlags = flags;
+                consumeBuffer(completion, flags, result);
+                // for multishot operations this is the terminating cqe, returning true re-arms them
                 boolean enqueueAgain = completion.complete(this, result);
                 active--;
-                if(enqueueAgain && completion.operation.op != Operation.Op.CANCEL) {
+                if(completion.pooled) {
+                    release(completion);
+                } else if(enqueueAgain && completion.operation.op != Operation.Op.CANCEL) {
                     enqueue(completion);
-                } else {
-                    //free(userData);
                 }
             }
-            if(completed < NCQES) {
-                break;
+            ring.cqAdvance(tail);
+        }
+    }
+
+    // moves an incremental provided buffer past what this cqe received, see BufferGroup.buffer()
+    private void consumeBuffer(UringCompletion completion, int flags, int result) {
+        if(!BufferGroup.hasBuffer(flags)) {
+            return;
+        }
+        int bgid = -1;
+        if(completion.operation instanceof Operation.Recv recvOperation) {
+            bgid = recvOperation.bufferGroup;
+        } else if(completion.operation instanceof Operation.RecvMsg recvMsgOperation) {
+            bgid = recvMsgOperation.bufferGroup;
+        }
+        if(bgid >= 0 && bgid < bufferGroups.size()) {
+            bufferGroups.get(bgid).consume(flags, result);
+        }
+    }
+
+    private void getEvents(int waitNr) throws UnixException {
+        while(true) {
+            try {
+                ring.getEvents(waitNr);
+            } catch(UnixException ex) {
+                if(ex.errno() == EINTR) {
+                    continue;
+                } else {
+                    throw ex;
+                }
             }
+            break;
         }
     }
 
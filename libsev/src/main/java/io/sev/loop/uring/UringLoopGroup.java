@@ -0,0 +1,216 @@
+package io.sev.loop.uring;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import io.sev.Native;
+import io.sev.socket.Socket;
+import io.sev.uring.UringConfig;
+import io.sev.util.unix.UnixException;
+
+import static io.sev.util.unix.Macros.*;
+
+/*
+ * thread-per-core loops. each of the n threads owns one UringLoop with its own ring,
+ * created and run on that thread only, optionally pinned to a cpu.
+ *
+ * other threads talk to a loop through execute(), the task runs on the loop's thread.
+ * the loops park in the kernel when idle and are woken up by UringLoop.execute().
+ * loops of a group message each other directly with UringLoop.message() and sendFile().
+ * a listening port is sharded across the loops with one SO_REUSEPORT socket per loop,
+ * so the kernel spreads incoming connections without any handoff.
+ *
+ * UringLoopGroup group = UringLoopGroup.start(4, new UringConfig(), true);
+ * int[] listenFds = group.listen(addr, SOCKADDR_IN_SIZE, 1024);
+ * for(int i = 0; i < group.size(); i++) {
+ *     int fd = listenFds[i];
+ *     group.execute(i, loop -> loop.enqueue(acceptCompletion(fd)));
+ * }
+ * ...
+ * group.close();
+ */
+public final class UringLoopGroup implements AutoCloseable {
+
+    private final UringConfig config;
+
+    private final boolean pin;
+
+    private final UringLoop[] loops;
+
+    private final Thread[] threads;
+
+    private final CountDownLatch started;
+
+    private volatile boolean running = true;
+
+    private volatile Throwable startFailure = null;
+
+    private int[] listenFds = new int[0];
+
+    private UringLoopGroup(int size, UringConfig config, boolean pin) {
+        this.config = config;
+        this.pin = pin;
+        this.loops = new UringLoop[size];
+        this.threads = new Thread[size];
+        this.started = new CountDownLatch(size);
+    }
+
+    // starts size loop threads, pinned to cpus 0..size-1 if pin is set
+    public static UringLoopGroup start(int size, UringConfig config, boolean pin) throws UnixException {
+        if(size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        UringLoopGroup group = new UringLoopGroup(size, config, pin);
+        for(int i = 0; i < size; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> group.run(index), "sev-loop-" + i);
+            group.threads[i] = thread;
+            thread.start();
+        }
+        try {
+            group.started.await();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            group.close();
+            throw new RuntimeException(ex);
+        }
+        Throwable failure = group.startFailure;
+        if(failure != null) {
+            group.close();
+            if(failure instanceof UnixException unixException) {
+                throw unixException;
+            }
+            throw new RuntimeException(failure);
+        }
+        return group;
+    }
+
+    public static UringLoopGroup start(int size) throws UnixException {
+        return start(size, new UringConfig(), false);
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    // only to be used from the loop's own thread, see execute()
+    public UringLoop loop(int index) {
+        return loops[index];
+    }
+
+    // runs task on the thread of loop index
+    public void execute(int index, Consumer<UringLoop> task) {
+        if(!running) {
+            throw new IllegalStateException("loop group is closed");
+        }
+        loops[index].execute(task);
+    }
+
+    // index of the loop with the fewest operations in flight
+    public int leastLoaded() {
+        int best = 0;
+        long bestLoad = Long.MAX_VALUE;
+        for(int i = 0; i < loops.length; i++) {
+            long load = loops[i].load();
+            if(load < bestLoad) {
+                best = i;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    // hands task, typically the setup of a new connection, to the least loaded loop
+    public int dispatch(Consumer<UringLoop> task) {
+        int index = leastLoaded();
+        execute(index, task);
+        return index;
+    }
+
+    /*
+     * one SO_REUSEPORT listening socket per loop, all bound to addr. fd i is meant to be
+     * accepted on by loop i. the sockets are closed by close().
+     */
+    public int[] listen(MemorySegment addr, int addrLen, int backlog) throws UnixException {
+        int domain = addrLen == SOCKADDR_IN6_SIZE ? AF_INET6 : AF_INET;
+        int[] fds = new int[loops.length];
+        Arrays.fill(fds, -1);
+        try {
+            for(int i = 0; i < fds.length; i++) {
+                fds[i] = Socket.socket(domain, SOCK_STREAM | SOCK_CLOEXEC, 0);
+                Socket.setSockOpt(fds[i], SOL_SOCKET, SO_REUSEADDR, 1);
+                Socket.setSockOpt(fds[i], SOL_SOCKET, SO_REUSEPORT, 1);
+                Socket.bind(fds[i], addr, addrLen);
+                Socket.listen(fds[i], backlog);
+            }
+        } catch(UnixException ex) {
+            for(int fd : fds) {
+                if(fd >= 0) {
+                    Socket.close(fd);
+                }
+            }
+            throw ex;
+        }
+        int[] all = Arrays.copyOf(listenFds, listenFds.length + fds.length);
+        System.arraycopy(fds, 0, all, listenFds.length, fds.length);
+        listenFds = all;
+        return fds;
+    }
+
+    // stops every loop thread, waits for them to deinit their loops and closes the listening sockets
+    @Override
+    public void close() {
+        running = false;
+        for(UringLoop loop : loops) {
+            if(loop != null) {
+                loop.stop();
+            }
+        }
+        for(Thread thread : threads) {
+            if(thread == null) {
+                continue;
+            }
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    thread.join();
+                    break;
+                } catch(InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for(int fd : listenFds) {
+            Socket.close(fd);
+        }
+        listenFds = new int[0];
+    }
+
+    private void run(int index) {
+        UringLoop loop;
+        try {
+            if(pin) {
+                Native.setAffinity(index);
+            }
+            loop = UringLoop.init(config);
+        } catch(Throwable t) {
+            startFailure = t;
+            running = false;
+            started.countDown();
+            return;
+        }
+        loops[index] = loop;
+        started.countDown();
+        try {
+            loop.runUntilStopped();
+        } finally {
+            loop.deinit();
+        }
+    }
+
+}
@@ -83,6 +83,24 @@ public class IntrusiveQueue<T extends IntrusiveQueue.Element<T>> extends Abstrac
         return el;
     }
 
+    // O(1) removal of an element known to be linked into this queue
+    public void unlink(T el) {
+        Objects.requireNonNull(el);
+        if(el.prev == null) {
+            head = el.next;
+        } else {
+            el.prev.next = el.next;
+        }
+        if(el.next == null) {
+            tail = el.prev;
+        } else {
+            el.next.prev = el.prev;
+        }
+        el.next = null;
+        el.prev = null;
+        size--;
+    }
+
     @Override
     public boolean isEmpty() {
         return head == null;
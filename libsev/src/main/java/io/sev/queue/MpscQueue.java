@@ -0,0 +1,104 @@
+package io.sev.queue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/*
+ * intrusive multi producer single consumer queue, after Dmitry Vyukov's non-blocking
+ * mpsc queue. it links elements through the same next field as IntrusiveQueue, an
+ * element can be in one of the two at a time.
+ *
+ * offer() is wait-free and may be called from any thread: one atomic exchange of the
+ * tail, then a release store linking the previous tail. poll() and isEmpty() belong to
+ * the single consumer. an element whose producer has exchanged the tail but not linked
+ * it yet is not returned by poll(), but isEmpty() already counts it, so a consumer
+ * that re-checks isEmpty() before blocking never misses it.
+ */
+public final class MpscQueue<T extends IntrusiveQueue.Element<T>> {
+
+    private static final VarHandle NEXT;
+
+    private static final VarHandle PREV;
+
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            NEXT = lookup.findVarHandle(IntrusiveQueue.Element.class, "next", Object.class);
+            PREV = lookup.findVarHandle(IntrusiveQueue.Element.class, "prev", Object.class);
+            TAIL = lookup.findVarHandle(MpscQueue.class, "tail", IntrusiveQueue.Element.class);
+        } catch(ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static final class Stub extends IntrusiveQueue.Element<Object> {
+    }
+
+    private final IntrusiveQueue.Element<?> stub = new Stub();
+
+    // last element, exchanged by producers
+    private volatile IntrusiveQueue.Element<?> tail = stub;
+
+    // next element to hand out, only touched by the consumer
+    private IntrusiveQueue.Element<?> head = stub;
+
+    public MpscQueue() {
+    }
+
+    public void offer(T el) {
+        Objects.requireNonNull(el);
+        push(el);
+    }
+
+    private void push(IntrusiveQueue.Element<?> el) {
+        NEXT.set(el, (Object) null);
+        IntrusiveQueue.Element<?> prev = (IntrusiveQueue.Element<?>) TAIL.getAndSet(this, el);
+        NEXT.setRelease(prev, (Object) el);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        IntrusiveQueue.Element<?> h = head;
+        IntrusiveQueue.Element<?> next = (IntrusiveQueue.Element<?>) NEXT.getAcquire(h);
+        if(h == stub) {
+            if(next == null) {
+                return null;
+            }
+            head = next;
+            h = next;
+            next = (IntrusiveQueue.Element<?>) NEXT.getAcquire(next);
+        }
+        if(next != null) {
+            head = next;
+            return (T) detach(h);
+        }
+        if(h != tail) {
+            // a producer has exchanged the tail but not linked h to it yet
+            return null;
+        }
+        // h is the last element, put the stub behind it so it can be handed out
+        push(stub);
+        next = (IntrusiveQueue.Element<?>) NEXT.getAcquire(h);
+        if(next != null) {
+            head = next;
+            return (T) detach(h);
+        }
+        return null;
+    }
+
+    // consumer only, false as soon as an offer() has exchanged the tail, before poll() can see it
+    public boolean isEmpty() {
+        IntrusiveQueue.Element<?> h = head;
+        return h == stub && NEXT.getAcquire(h) == null && tail == stub;
+    }
+
+    private static IntrusiveQueue.Element<?> detach(IntrusiveQueue.Element<?> el) {
+        NEXT.set(el, (Object) null);
+        PREV.set(el, (Object) null);
+        return el;
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.sev.socket;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static io.sev.util.unix.UnixException.unixException;
+
+import io.sev.Native;
+import io.sev.util.unix.UnixException;
+
+/*
+ * a pipe pair, the in-kernel buffer splice moves data through. bytes spliced into
+ * writeFd are read back out of readFd without ever being copied to user space.
+ */
+public final class Pipe implements AutoCloseable {
+
+    private static final MethodHandle pipeHandle;
+
+    private static final MethodHandle setPipeSizeHandle;
+
+    static {
+        try {
+            Class.forName(Native.class.getName());
+        } catch(ClassNotFoundException e) {
+            throw new RuntimeException("could not load Native");
+        }
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup lookup = SymbolLookup.loaderLookup();
+
+        MemorySegment pipeSegment = lookup.findOrThrow("sev_socket_pipe");
+        FunctionDescriptor pipeDescriptor = FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT);
+        pipeHandle = linker.downcallHandle(pipeSegment, pipeDescriptor);
+
+        MemorySegment setPipeSizeSegment = lookup.findOrThrow("sev_socket_setPipeSize");
+        FunctionDescriptor setPipeSizeDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT);
+        setPipeSizeHandle = linker.downcallHandle(setPipeSizeSegment, setPipeSizeDescriptor);
+    }
+
+    public final int readFd;
+
+    public final int writeFd;
+
+    private Pipe(int readFd, int writeFd) {
+        this.readFd = readFd;
+        this.writeFd = writeFd;
+    }
+
+    // flags are O_CLOEXEC, O_NONBLOCK, ...
+    public static Pipe open(int flags) throws UnixException {
+        MemorySegment fds = Native.callocator().allocate(JAVA_INT, 2L);
+        try {
+            int res;
+            try {
+                res = (int) pipeHandle.invokeExact(fds, flags);
+            } catch(Throwable t) {
+                throw new RuntimeException(t);
+            }
+            if(res < 0) {
+                unixException(res);
+            }
+            return new Pipe(fds.getAtIndex(JAVA_INT, 0L), fds.getAtIndex(JAVA_INT, 1L));
+        } finally {
+            Native.free(fds);
+        }
+    }
+
+    // F_SETPIPE_SZ, returns the capacity the kernel settled on
+    public int setSize(int size) throws UnixException {
+        int res;
+        try {
+            res = (int) setPipeSizeHandle.invokeExact(writeFd, size);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+        return res;
+    }
+
+    @Override
+    public void close() {
+        Socket.close(readFd);
+        Socket.close(writeFd);
+    }
+
+}
@@ -74,18 +74,13 @@ public class Socket {
         setSockOptHandle = linker.downcallHandle(setSockOptSegment, setSockOptDescriptor);
     }
 
-    private static Object invokeWithArgumentsUnchecked(MethodHandle handle, Object... args) {
-        Object result = null;
+    public static int socket(int domain, int type, int protocol) throws UnixException {
+        int res;
         try {
-            result = handle.invokeWithArguments(args);
-            return result;
+            res = (int) socketHandle.invokeExact(domain, type, protocol);
         } catch(Throwable t) {
             throw new RuntimeException(t);
         }
-    }
-
-    public static int socket(int domain, int type, int protocol) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(socketHandle, domain, type, protocol);
         if(res < 0) {
             unixException(res);
         }
@@ -93,39 +88,67 @@ public class Socket {
     }
 
     public static void bind(int fd, MemorySegment addr, int len) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(bindHandle, fd, addr, len);
+        int res;
+        try {
+            res = (int) bindHandle.invokeExact(fd, addr, len);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
     }
 
+    private static int closeUnchecked(int fd) {
+        try {
+            return (int) closeHandle.invokeExact(fd);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
     public static void closeStrict(int fd) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(closeHandle, fd);
+        int res = closeUnchecked(fd);
         if(res < 0) {
             unixException(res);
         }
     }
 
     public static void close(int fd) {
-        invokeWithArgumentsUnchecked(closeHandle, fd);
+        closeUnchecked(fd);
     }
 
     public static void listen(int fd, int backlog) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(listenHandle, fd, backlog);
+        int res;
+        try {
+            res = (int) listenHandle.invokeExact(fd, backlog);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
     }
 
     public static void connect(int fd, MemorySegment addr, int len) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(connectHandle, fd, addr, len);
+        int res;
+        try {
+            res = (int) connectHandle.invokeExact(fd, addr, len);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
     }
 
     public static void shutdownSocket(int fd, boolean read, boolean write) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(shutdownSocketHandle, fd, read, write);
+        int res;
+        try {
+            res = (int) shutdownSocketHandle.invokeExact(fd, read, write);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
@@ -136,14 +159,24 @@ public class Socket {
     }
 
     public static void setSockOpt(int fd, int level, int optname, int optval) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(setSockOptHandle, fd, level, optname, optval);
+        int res;
+        try {
+            res = (int) setSockOptHandle.invokeExact(fd, level, optname, optval);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
     }
 
     public static int getSockOpt(int fd, int level, int optname) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(getSockOptHandle, fd, level, optname);
+        int res;
+        try {
+            res = (int) getSockOptHandle.invokeExact(fd, level, optname);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
@@ -6,64 +6,141 @@ import java.lang.foreign.MemorySegment;
 import java.lang.foreign.SegmentAllocator;
 import java.lang.foreign.SymbolLookup;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
 
 import io.sev.Native;
 import io.sev.util.unix.UnixException;
 
 import static io.sev.util.unix.UnixException.unixException;
-import static java.lang.foreign.ValueLayout.ADDRESS;
-import static java.lang.foreign.ValueLayout.JAVA_BOOLEAN;
 import static java.lang.foreign.ValueLayout.JAVA_INT;
 import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static io.sev.uring.IoUringCQE.*;
+import static io.sev.uring.IoUringSQE.SQE_SIZE;
+import static io.sev.util.unix.Macros.*;
 
 public class IoUring {
 
-    private static final int DEFAULT_ENTRIES = 512;
-
     //change as needed
     private static final int STRUCT_IO_URING_SIZE = 216;
 
-    private static final MethodHandle queueInitHandle;
-
-    private static final MethodHandle getSqeHandle;
-
-    private static final MethodHandle sqeSetData64Handle;
+    /*
+     * offsets into liburing's struct io_uring, change together with STRUCT_IO_URING_SIZE
+     *
+     * struct io_uring_sq {
+     *   unsigned *khead;              0
+     *   unsigned *ktail;              8
+     *   unsigned *kring_mask;         16
+     *   unsigned *kring_entries;      24
+     *   unsigned *kflags;             32
+     *   unsigned *kdropped;           40
+     *   unsigned *array;              48
+     *   struct io_uring_sqe *sqes;    56
+     *   unsigned sqe_head;            64
+     *   unsigned sqe_tail;            68
+     *   size_t ring_sz;               72
+     *   void *ring_ptr;               80
+     *   unsigned ring_mask;           88
+     *   unsigned ring_entries;        92
+     *   unsigned pad[2];              96
+     * }
+     *
+     * struct io_uring_cq {
+     *   unsigned *khead;              104
+     *   unsigned *ktail;              112
+     *   unsigned *kring_mask;         120
+     *   unsigned *kring_entries;      128
+     *   unsigned *kflags;             136
+     *   unsigned *koverflow;          144
+     *   struct io_uring_cqe *cqes;    152
+     *   size_t ring_sz;               160
+     *   void *ring_ptr;               168
+     *   unsigned ring_mask;           176
+     *   unsigned ring_entries;        180
+     *   unsigned pad[2];              184
+     * }
+     *
+     * unsigned flags;                 192
+     * int ring_fd;                    196
+     */
+    private static final long SQ_KHEAD = 0L;
+    private static final long SQ_KFLAGS = 32L;
+    private static final long SQ_SQES = 56L;
+    private static final long SQ_SQE_TAIL = 68L;
+    private static final long SQ_RING_MASK = 88L;
+    private static final long SQ_RING_ENTRIES = 92L;
+    private static final long CQ_KHEAD = 104L;
+    private static final long CQ_KTAIL = 112L;
+    private static final long CQ_CQES = 152L;
+    private static final long CQ_RING_MASK = 176L;
+    private static final long CQ_RING_ENTRIES = 180L;
+
+    private static final long RING_FLAGS = 192L;
+    private static final long RING_FD = 196L;
+
+    /*
+     * struct io_uring_params {
+     *   __u32 sq_entries;        0
+     *   __u32 cq_entries;        4
+     *   __u32 flags;             8
+     *   __u32 sq_thread_cpu;     12
+     *   __u32 sq_thread_idle;    16
+     *   __u32 features;          20
+     *   __u32 wq_fd;             24
+     *   __u32 resv[3];           28
+     *   struct io_sqring_offsets sq_off;   40
+     *   struct io_cqring_offsets cq_off;   80
+     * }
+     */
+    private static final long PARAMS_SIZE = 120L;
+    private static final long PARAMS_CQ_ENTRIES = 4L;
+    private static final long PARAMS_FLAGS = 8L;
+    private static final long PARAMS_SQ_THREAD_CPU = 12L;
+    private static final long PARAMS_SQ_THREAD_IDLE = 16L;
+    private static final long PARAMS_FEATURES = 20L;
+
+    /*
+     * optional setup flags, each with the flags a ring has to be set up with to find out
+     * whether the kernel supports it. only flags a probe ring rejects are dropped.
+     */
+    private static final int[][] OPTIONAL_FLAGS = {
+        {IORING_SETUP_SQPOLL, IORING_SETUP_SQPOLL},
+        {IORING_SETUP_COOP_TASKRUN, IORING_SETUP_COOP_TASKRUN},
+        {IORING_SETUP_TASKRUN_FLAG, IORING_SETUP_COOP_TASKRUN | IORING_SETUP_TASKRUN_FLAG},
+        {IORING_SETUP_SINGLE_ISSUER, IORING_SETUP_SINGLE_ISSUER},
+        {IORING_SETUP_DEFER_TASKRUN, IORING_SETUP_SINGLE_ISSUER | IORING_SETUP_DEFER_TASKRUN}
+    };
 
-    private static final MethodHandle sqeSetDataHandle;
+    private static final VarHandle UINT = JAVA_INT.varHandle();
 
-    private static final MethodHandle sqeSetFlagsHandle;
+    private static final MethodHandle queueInitParamsHandle;
 
-    private static final MethodHandle prepNopHandle;
+    private static final MethodHandle submitHandle;
 
-    private static final MethodHandle prepAcceptHandle;
+    private static final MethodHandle submitAndWaitHandle;
 
-    private static final MethodHandle prepConnectHandle;
+    private static final MethodHandle enterHandle;
 
-    private static final MethodHandle prepCloseHandle;
+    private static final MethodHandle setupBufRingHandle;
 
-    private static final MethodHandle prepShutdownHandle;
+    private static final MethodHandle freeBufRingHandle;
 
-    private static final MethodHandle prepReadHandle;
+    private static final MethodHandle registerBuffersHandle;
 
-    private static final MethodHandle prepWriteHandle;
+    private static final MethodHandle registerBuffersSparseHandle;
 
-    private static final MethodHandle prepRecvHandle;
+    private static final MethodHandle registerBuffersUpdateHandle;
 
-    private static final MethodHandle prepSendHandle;
+    private static final MethodHandle unregisterBuffersHandle;
 
-    private static final MethodHandle prepTimeoutHandle;
+    private static final MethodHandle registerFilesHandle;
 
-    private static final MethodHandle prepPollAddHandle;
+    private static final MethodHandle registerFilesSparseHandle;
 
-    private static final MethodHandle prepCancel64Handle;
+    private static final MethodHandle registerFilesUpdateHandle;
 
-    private static final MethodHandle prepCancelHandle;
+    private static final MethodHandle unregisterFilesHandle;
 
-    private static final MethodHandle submitHandle;
-
-    private static final MethodHandle submitAndWaitHandle;
-
-    private static final MethodHandle copyCqesHandle;
+    private static final MethodHandle registerFileAllocRangeHandle;
 
     private static final MethodHandle queueExitHandle;
 
@@ -77,206 +154,533 @@ public class IoUring {
         Linker linker = Linker.nativeLinker();
         SymbolLookup lookup = SymbolLookup.loaderLookup();
 
-        MemorySegment queueInitSegment = lookup.findOrThrow("sev_uring_queueInit");
-        FunctionDescriptor queueInitDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_INT);
-        queueInitHandle = linker.downcallHandle(queueInitSegment, queueInitDescriptor);
-
-        MemorySegment getSqeSegment = lookup.findOrThrow("sev_uring_getSqe");
-        FunctionDescriptor getSqeDescriptor = FunctionDescriptor.of(JAVA_LONG, JAVA_LONG);
-        getSqeHandle = linker.downcallHandle(getSqeSegment, getSqeDescriptor);
-
-        MemorySegment sqeSetData64Segment = lookup.findOrThrow("sev_uring_sqeSetData64");
-        FunctionDescriptor sqeSetData64Descriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_LONG);
-        sqeSetData64Handle = linker.downcallHandle(sqeSetData64Segment, sqeSetData64Descriptor);
-
-        MemorySegment sqeSetDataSegment = lookup.findOrThrow("sev_uring_sqeSetData");
-        FunctionDescriptor sqeSetDataDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_LONG);
-        sqeSetDataHandle = linker.downcallHandle(sqeSetDataSegment, sqeSetDataDescriptor);
+        MemorySegment queueInitParamsSegment = lookup.findOrThrow("sev_uring_queueInitParams");
+        FunctionDescriptor queueInitParamsDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_LONG);
+        queueInitParamsHandle = linker.downcallHandle(queueInitParamsSegment, queueInitParamsDescriptor);
 
-        MemorySegment sqeSetFlagsSegment = lookup.findOrThrow("sev_uring_sqeSetFlags");
-        FunctionDescriptor sqeSetFlagsDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT);
-        sqeSetFlagsHandle = linker.downcallHandle(sqeSetFlagsSegment, sqeSetFlagsDescriptor);
-
-        MemorySegment prepNopSegment = lookup.findOrThrow("sev_uring_prepNop");
-        FunctionDescriptor prepNopDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG);
-        prepNopHandle = linker.downcallHandle(prepNopSegment, prepNopDescriptor);
-
-        MemorySegment prepAcceptSegment = lookup.findOrThrow("sev_uring_prepAccept");
-        FunctionDescriptor prepAcceptDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, JAVA_BOOLEAN);
-        prepAcceptHandle = linker.downcallHandle(prepAcceptSegment, prepAcceptDescriptor);
+        MemorySegment submitSegment = lookup.findOrThrow("sev_uring_submit");
+        FunctionDescriptor submitDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG);
+        submitHandle = linker.downcallHandle(submitSegment, submitDescriptor);
 
-        MemorySegment prepConnectSegment = lookup.findOrThrow("sev_uring_prepConnect");
-        FunctionDescriptor prepConnectDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT);
-        prepConnectHandle = linker.downcallHandle(prepConnectSegment, prepConnectDescriptor);
+        MemorySegment submitAndWaitSegment = lookup.findOrThrow("sev_uring_submitAndWait");
+        FunctionDescriptor submitAndWaitDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT);
+        submitAndWaitHandle = linker.downcallHandle(submitAndWaitSegment, submitAndWaitDescriptor);
 
-        MemorySegment prepCloseSegment = lookup.findOrThrow("sev_uring_prepClose");
-        FunctionDescriptor prepCloseDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT);
-        prepCloseHandle = linker.downcallHandle(prepCloseSegment, prepCloseDescriptor);
+        MemorySegment enterSegment = lookup.findOrThrow("sev_uring_enter");
+        FunctionDescriptor enterDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT);
+        enterHandle = linker.downcallHandle(enterSegment, enterDescriptor);
 
-        MemorySegment prepShutdownSegment = lookup.findOrThrow("sev_uring_prepShutdown");
-        FunctionDescriptor prepShutdownDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, JAVA_INT);
-        prepShutdownHandle = linker.downcallHandle(prepShutdownSegment, prepShutdownDescriptor);
+        MemorySegment setupBufRingSegment = lookup.findOrThrow("sev_uring_setupBufRing");
+        FunctionDescriptor setupBufRingDescriptor = FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT);
+        setupBufRingHandle = linker.downcallHandle(setupBufRingSegment, setupBufRingDescriptor);
 
-        MemorySegment prepReadSegment = lookup.findOrThrow("sev_uring_prepRead");
-        FunctionDescriptor prepReadDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT, JAVA_LONG);
-        prepReadHandle = linker.downcallHandle(prepReadSegment, prepReadDescriptor);
+        MemorySegment freeBufRingSegment = lookup.findOrThrow("sev_uring_freeBufRing");
+        FunctionDescriptor freeBufRingDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_INT, JAVA_INT);
+        freeBufRingHandle = linker.downcallHandle(freeBufRingSegment, freeBufRingDescriptor);
 
-        MemorySegment prepWriteSegment = lookup.findOrThrow("sev_uring_prepWrite");
-        FunctionDescriptor prepWriteDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_INT, JAVA_LONG);
-        prepWriteHandle = linker.downcallHandle(prepWriteSegment, prepWriteDescriptor);
+        MemorySegment registerBuffersSegment = lookup.findOrThrow("sev_uring_registerBuffers");
+        FunctionDescriptor registerBuffersDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_INT);
+        registerBuffersHandle = linker.downcallHandle(registerBuffersSegment, registerBuffersDescriptor);
 
-        MemorySegment prepRecvSegment = lookup.findOrThrow("sev_uring_prepRecv");
-        FunctionDescriptor prepRecvDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT);
-        prepRecvHandle = linker.downcallHandle(prepRecvSegment, prepRecvDescriptor);
+        MemorySegment registerBuffersSparseSegment = lookup.findOrThrow("sev_uring_registerBuffersSparse");
+        FunctionDescriptor registerBuffersSparseDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT);
+        registerBuffersSparseHandle = linker.downcallHandle(registerBuffersSparseSegment, registerBuffersSparseDescriptor);
 
-        MemorySegment prepSendSegment = lookup.findOrThrow("sev_uring_prepSend");
-        FunctionDescriptor prepSendDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT);
-        prepSendHandle = linker.downcallHandle(prepSendSegment, prepSendDescriptor);
-        
-        MemorySegment prepTimeoutSegment = lookup.findOrThrow("sev_uring_prepTimeout");
-        FunctionDescriptor prepTimeoutDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, ADDRESS, JAVA_INT, JAVA_INT);
-        prepTimeoutHandle = linker.downcallHandle(prepTimeoutSegment, prepTimeoutDescriptor);
+        MemorySegment registerBuffersUpdateSegment = lookup.findOrThrow("sev_uring_registerBuffersUpdate");
+        FunctionDescriptor registerBuffersUpdateDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT, JAVA_LONG, JAVA_INT);
+        registerBuffersUpdateHandle = linker.downcallHandle(registerBuffersUpdateSegment, registerBuffersUpdateDescriptor);
 
-        MemorySegment prepPollAddSegment = lookup.findOrThrow("sev_uring_prepPollAdd");
-        FunctionDescriptor prepPollAddDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, JAVA_INT);
-        prepPollAddHandle = linker.downcallHandle(prepPollAddSegment, prepPollAddDescriptor);
+        MemorySegment unregisterBuffersSegment = lookup.findOrThrow("sev_uring_unregisterBuffers");
+        FunctionDescriptor unregisterBuffersDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG);
+        unregisterBuffersHandle = linker.downcallHandle(unregisterBuffersSegment, unregisterBuffersDescriptor);
 
-        MemorySegment prepCancel64Segment = lookup.findOrThrow("sev_uring_prepCancel64");
-        FunctionDescriptor prepCancel64Descriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_LONG, JAVA_INT);
-        prepCancel64Handle = linker.downcallHandle(prepCancel64Segment, prepCancel64Descriptor);
+        MemorySegment registerFilesSegment = lookup.findOrThrow("sev_uring_registerFiles");
+        FunctionDescriptor registerFilesDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_INT);
+        registerFilesHandle = linker.downcallHandle(registerFilesSegment, registerFilesDescriptor);
 
-        MemorySegment prepCancelSegment = lookup.findOrThrow("sev_uring_prepCancel");
-        FunctionDescriptor prepCancelDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_LONG, JAVA_INT);
-        prepCancelHandle = linker.downcallHandle(prepCancelSegment, prepCancelDescriptor);
+        MemorySegment registerFilesSparseSegment = lookup.findOrThrow("sev_uring_registerFilesSparse");
+        FunctionDescriptor registerFilesSparseDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT);
+        registerFilesSparseHandle = linker.downcallHandle(registerFilesSparseSegment, registerFilesSparseDescriptor);
 
-        MemorySegment submitSegment = lookup.findOrThrow("sev_uring_submit");
-        FunctionDescriptor submitDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG);
-        submitHandle = linker.downcallHandle(submitSegment, submitDescriptor);
+        MemorySegment registerFilesUpdateSegment = lookup.findOrThrow("sev_uring_registerFilesUpdate");
+        FunctionDescriptor registerFilesUpdateDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT, JAVA_LONG, JAVA_INT);
+        registerFilesUpdateHandle = linker.downcallHandle(registerFilesUpdateSegment, registerFilesUpdateDescriptor);
 
-        MemorySegment submitAndWaitSegment = lookup.findOrThrow("sev_uring_submitAndWait");
-        FunctionDescriptor submitAndWaitDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT);
-        submitAndWaitHandle = linker.downcallHandle(submitAndWaitSegment, submitAndWaitDescriptor);
+        MemorySegment unregisterFilesSegment = lookup.findOrThrow("sev_uring_unregisterFiles");
+        FunctionDescriptor unregisterFilesDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG);
+        unregisterFilesHandle = linker.downcallHandle(unregisterFilesSegment, unregisterFilesDescriptor);
 
-        MemorySegment copyCqesSegment = lookup.findOrThrow("sev_uring_copyCqes");
-        FunctionDescriptor copyCqesDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, ADDRESS, JAVA_INT, JAVA_INT);
-        copyCqesHandle = linker.downcallHandle(copyCqesSegment, copyCqesDescriptor);
+        MemorySegment registerFileAllocRangeSegment = lookup.findOrThrow("sev_uring_registerFileAllocRange");
+        FunctionDescriptor registerFileAllocRangeDescriptor = FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_INT, JAVA_INT);
+        registerFileAllocRangeHandle = linker.downcallHandle(registerFileAllocRangeSegment, registerFileAllocRangeDescriptor);
 
         MemorySegment queueExitSegment = lookup.findOrThrow("sev_uring_queueExit");
         FunctionDescriptor queueExitDescriptor = FunctionDescriptor.ofVoid(JAVA_LONG);
         queueExitHandle = linker.downcallHandle(queueExitSegment, queueExitDescriptor);
     }
     
+    private final MemorySegment ring;
+
     private final long ringAddress;
 
-    private IoUring(int entries, SegmentAllocator allocator) throws UnixException {
-        MemorySegment ring = allocator.allocate(STRUCT_IO_URING_SIZE);
+    private final MemorySegment sqKhead;
+
+    private final long sqesAddress;
+
+    private final int sqMask;
+
+    private final int sqEntries;
+
+    private final MemorySegment sqKflags;
+
+    private final MemorySegment cqKhead;
+
+    private final MemorySegment cqKtail;
+
+    private final MemorySegment cqes;
+
+    private final int cqMask;
+
+    private final int features;
+
+    private IoUring(UringConfig config, SegmentAllocator allocator) throws UnixException {
+        this.ring = allocator.allocate(STRUCT_IO_URING_SIZE, 8L);
         this.ringAddress = ring.address();
-        init(entries, ring.address(), 0);
+        this.features = init(config, ringAddress);
+        this.sqKhead = MemorySegment.ofAddress(ring.get(JAVA_LONG, SQ_KHEAD)).reinterpret(4L);
+        this.sqesAddress = ring.get(JAVA_LONG, SQ_SQES);
+        this.sqMask = ring.get(JAVA_INT, SQ_RING_MASK);
+        this.sqEntries = ring.get(JAVA_INT, SQ_RING_ENTRIES);
+        this.sqKflags = MemorySegment.ofAddress(ring.get(JAVA_LONG, SQ_KFLAGS)).reinterpret(4L);
+        this.cqKhead = MemorySegment.ofAddress(ring.get(JAVA_LONG, CQ_KHEAD)).reinterpret(4L);
+        this.cqKtail = MemorySegment.ofAddress(ring.get(JAVA_LONG, CQ_KTAIL)).reinterpret(4L);
+        this.cqMask = ring.get(JAVA_INT, CQ_RING_MASK);
+        int cqEntries = ring.get(JAVA_INT, CQ_RING_ENTRIES);
+        this.cqes = MemorySegment.ofAddress(ring.get(JAVA_LONG, CQ_CQES)).reinterpret((long) cqEntries * CQE_SIZE);
+    }
+
+    public long ringAddress() {
+        return ringAddress;
     }
 
-    private static Object invokeWithArgumentsUnchecked(MethodHandle handle, Object... args) {
-        Object result = null;
+    // returns the features reported by the kernel
+    private static int init(UringConfig config, long ringAddress) throws UnixException {
+        MemorySegment params = Native.callocSegment(1, PARAMS_SIZE);
         try {
-            result = handle.invokeWithArguments(args);
-            return result;
-        } catch(Throwable t) {
-            throw new RuntimeException(t);
+            int flags = config.setupFlags();
+            int res = queueInit(config.entries, ringAddress, params, config, flags);
+            //EINVAL for modes the kernel doesn't know, EPERM for unprivileged sqpoll on older kernels
+            if(res == -EINVAL || res == -EPERM) {
+                int supported = supportedFlags(flags);
+                if(supported != flags) {
+                    res = queueInit(config.entries, ringAddress, params, config, supported);
+                }
+            }
+            if(res != 0) {
+                unixException(res);
+            }
+            return params.get(JAVA_INT, PARAMS_FEATURES);
+        } finally {
+            Native.free(params);
         }
     }
 
-    private static void invokeWithArgumentsVoidUnchecked(MethodHandle handle, Object... args) {
+    private static int queueInit(int entries, long ringAddress, MemorySegment params, UringConfig config, int flags) {
+        params.fill((byte) 0);
+        params.set(JAVA_INT, PARAMS_CQ_ENTRIES, config.cqEntries);
+        params.set(JAVA_INT, PARAMS_FLAGS, flags);
+        params.set(JAVA_INT, PARAMS_SQ_THREAD_CPU, Math.max(config.sqThreadCpu, 0));
+        params.set(JAVA_INT, PARAMS_SQ_THREAD_IDLE, config.sqThreadIdleMs);
         try {
-            handle.invokeWithArguments(args);
+            return (int) queueInitParamsHandle.invokeExact(entries, ringAddress, params.address());
         } catch(Throwable t) {
             throw new RuntimeException(t);
         }
     }
 
-    public long ringAddress() {
-        return ringAddress;
+    // flags without the optional ones the running kernel rejects, and what depends on them
+    private static int supportedFlags(int flags) {
+        int supported = flags;
+        for(int[] optional : OPTIONAL_FLAGS) {
+            if((flags & optional[0]) != 0 && !probe(optional[1])) {
+                supported &= ~optional[0];
+            }
+        }
+        if((supported & IORING_SETUP_SQPOLL) == 0) {
+            supported &= ~IORING_SETUP_SQ_AFF;
+        }
+        if((supported & IORING_SETUP_SINGLE_ISSUER) == 0) {
+            supported &= ~IORING_SETUP_DEFER_TASKRUN;
+        }
+        if((supported & (IORING_SETUP_COOP_TASKRUN | IORING_SETUP_DEFER_TASKRUN)) == 0) {
+            supported &= ~IORING_SETUP_TASKRUN_FLAG;
+        }
+        return supported;
     }
 
-    private static void init(int entries, long ringAddress, int flags) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(queueInitHandle, entries, ringAddress, flags);
-        if(res < 0) {
-            unixException(res);
+    // whether a small ring can be set up with flags
+    private static boolean probe(int flags) {
+        MemorySegment probeRing = Native.callocSegment(1, STRUCT_IO_URING_SIZE);
+        MemorySegment params = Native.callocSegment(1, PARAMS_SIZE);
+        try {
+            params.set(JAVA_INT, PARAMS_FLAGS, flags);
+            int res;
+            try {
+                res = (int) queueInitParamsHandle.invokeExact(2, probeRing.address(), params.address());
+                if(res == 0) {
+                    queueExitHandle.invokeExact(probeRing.address());
+                }
+            } catch(Throwable t) {
+                throw new RuntimeException(t);
+            }
+            return res == 0;
+        } finally {
+            Native.free(params);
+            Native.free(probeRing);
         }
     }
 
     public static IoUring init(SegmentAllocator allocator) throws UnixException {
-        return new IoUring(DEFAULT_ENTRIES, allocator);
+        return new IoUring(new UringConfig(), allocator);
+    }
+
+    public static IoUring init(UringConfig config, SegmentAllocator allocator) throws UnixException {
+        return new IoUring(config, allocator);
+    }
+
+    // setup flags the ring was created with, after any fallback
+    public int flags() {
+        return ring.get(JAVA_INT, RING_FLAGS);
+    }
+
+    // the fd other rings address this ring by with IORING_OP_MSG_RING
+    public int ringFd() {
+        return ring.get(JAVA_INT, RING_FD);
+    }
+
+    // IORING_FEAT_* of the running kernel
+    public int features() {
+        return features;
+    }
+
+    // position of sqe in the sq array, stable until the sqe has been submitted
+    public int sqeIndex(long sqe) {
+        return (int) ((sqe - sqesAddress) / SQE_SIZE);
+    }
+
+    public int sqEntries() {
+        return sqEntries;
+    }
+
+    // sqes getSqe() can still hand out before the next submit
+    public int sqSpaceLeft() {
+        int head = (int) UINT.getAcquire(sqKhead, 0L);
+        int tail = ring.get(JAVA_INT, SQ_SQE_TAIL);
+        return sqEntries - (tail - head);
+    }
+
+    // sqes handed out and not yet consumed by the kernel
+    public int sqReady() {
+        return sqEntries - sqSpaceLeft();
+    }
+
+    public long getSqe() {
+        int head = (int) UINT.getAcquire(sqKhead, 0L);
+        int tail = ring.get(JAVA_INT, SQ_SQE_TAIL);
+        if(tail - head >= sqEntries) {
+            return 0L;
+        }
+        ring.set(JAVA_INT, SQ_SQE_TAIL, tail + 1);
+        long sqe = sqesAddress + (long) (tail & sqMask) * SQE_SIZE;
+        IoUringSQE.initialize(sqe);
+        return sqe;
     }
 
     public static void sqeSetData64(long sqe, long data) {
-        invokeWithArgumentsVoidUnchecked(sqeSetData64Handle, sqe, data);
+        IoUringSQE.userData(sqe, data);
     }
 
     public static void sqeSetData(long sqe, long data) {
-        invokeWithArgumentsVoidUnchecked(sqeSetDataHandle, sqe, data);
+        IoUringSQE.userData(sqe, data);
     }
 
     public static void sqeSetFlags(long sqe, int flags) {
-        invokeWithArgumentsVoidUnchecked(sqeSetFlagsHandle, sqe, flags);
+        IoUringSQE.flags(sqe, flags);
+    }
+
+    /*
+     * the next sqe only starts once this one completed. a failed, or for reads and recvs
+     * short, link fails the rest of the chain with -ECANCELED, a hard link does not.
+     */
+    public static void sqeSetLink(long sqe, boolean hard) {
+        IoUringSQE.orFlags(sqe, hard ? IOSQE_IO_HARDLINK : IOSQE_IO_LINK);
+    }
+
+    // the fd of the sqe is an index into the registered file table
+    public static void sqeSetFixedFile(long sqe) {
+        IoUringSQE.orFlags(sqe, IOSQE_FIXED_FILE);
+    }
+
+    // __io_uring_set_target_fixed_file(), the result of the operation goes into a fixed slot
+    private static void setTargetFixedFile(long sqe, int fileIndex) {
+        IoUringSQE.fileIndex(sqe, fileIndex == IORING_FILE_INDEX_ALLOC ? IORING_FILE_INDEX_ALLOC : fileIndex + 1);
+    }
+
+    // let the kernel pick the buffer from provided buffer group bgid when the operation runs
+    public static void sqeSetBufferSelect(long sqe, int bgid) {
+        IoUringSQE.orFlags(sqe, IOSQE_BUFFER_SELECT);
+        IoUringSQE.bufIndex(sqe, bgid);
     }
 
     public static void prepNop(long sqe) {
-        invokeWithArgumentsVoidUnchecked(prepNopHandle, sqe);
+        IoUringSQE.prepRw(sqe, IORING_OP_NOP, -1, 0L, 0, 0L);
     }
 
     public static void prepAccept(long sqe, int sockfd, MemorySegment addr, MemorySegment addrlen, int flags, boolean multishot) {
-        invokeWithArgumentsVoidUnchecked(prepAcceptHandle, sqe, sockfd, addr, addrlen, flags, multishot);
+        IoUringSQE.prepRw(sqe, IORING_OP_ACCEPT, sockfd, addr.address(), 0, addrlen.address());
+        IoUringSQE.opFlags(sqe, flags);
+        if(multishot) {
+            IoUringSQE.ioprio(sqe, IORING_ACCEPT_MULTISHOT);
+        }
+    }
+
+    // the accepted socket goes into slot fileIndex, or a free one for IORING_FILE_INDEX_ALLOC
+    public static void prepAcceptDirect(long sqe, int sockfd, MemorySegment addr, MemorySegment addrlen, int flags, boolean multishot, int fileIndex) {
+        prepAccept(sqe, sockfd, addr, addrlen, flags, multishot);
+        setTargetFixedFile(sqe, fileIndex);
     }
 
     public static void prepConnect(long sqe, int sockfd, MemorySegment addr, int addrlen) {
-        invokeWithArgumentsVoidUnchecked(prepConnectHandle, sqe, sockfd, addr, addrlen);
+        IoUringSQE.prepRw(sqe, IORING_OP_CONNECT, sockfd, addr.address(), 0, addrlen);
     }
 
     public static void prepClose(long sqe, int fd) {
-        invokeWithArgumentsVoidUnchecked(prepCloseHandle, sqe, fd);
+        IoUringSQE.prepRw(sqe, IORING_OP_CLOSE, fd, 0L, 0, 0L);
+    }
+
+    public static void prepCloseDirect(long sqe, int fileIndex) {
+        prepClose(sqe, 0);
+        IoUringSQE.fileIndex(sqe, fileIndex + 1);
+    }
+
+    public static void prepOpenat(long sqe, int dfd, MemorySegment path, int flags, int mode) {
+        IoUringSQE.prepRw(sqe, IORING_OP_OPENAT, dfd, path.address(), mode, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepOpenatDirect(long sqe, int dfd, MemorySegment path, int flags, int mode, int fileIndex) {
+        prepOpenat(sqe, dfd, path, flags, mode);
+        setTargetFixedFile(sqe, fileIndex);
+    }
+
+    // posts a cqe with user_data data and res len to the ring behind fd
+    public static void prepMsgRing(long sqe, int fd, int len, long data, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_MSG_RING, fd, IORING_MSG_DATA, len, data);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    // same, the posted cqe carries cqeFlags as its flags
+    public static void prepMsgRingCqeFlags(long sqe, int fd, int len, long data, int flags, int cqeFlags) {
+        prepMsgRing(sqe, fd, len, data, flags | IORING_MSG_RING_FLAGS_PASS);
+        IoUringSQE.fileIndex(sqe, cqeFlags);
+    }
+
+    /*
+     * installs fixed file sourceFd of this ring into slot targetFd of the fixed file table of
+     * the ring behind fd, and posts a cqe with user_data data and the slot as res there
+     */
+    public static void prepMsgRingFd(long sqe, int fd, int sourceFd, int targetFd, long data, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_MSG_RING, fd, IORING_MSG_SEND_FD, 0, data);
+        IoUringSQE.addr3(sqe, sourceFd);
+        setTargetFixedFile(sqe, targetFd);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepStatx(long sqe, int dfd, MemorySegment path, int flags, int mask, MemorySegment statxbuf) {
+        IoUringSQE.prepRw(sqe, IORING_OP_STATX, dfd, path.address(), mask, statxbuf.address());
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    // offset and len of 0 sync the whole file, IORING_FSYNC_DATASYNC skips metadata not needed to read the data back
+    public static void prepFsync(long sqe, int fd, int fsyncFlags, long offset, int len) {
+        IoUringSQE.prepRw(sqe, IORING_OP_FSYNC, fd, 0L, len, offset);
+        IoUringSQE.opFlags(sqe, fsyncFlags);
+    }
+
+    public static void prepSyncFileRange(long sqe, int fd, int len, long offset, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_SYNC_FILE_RANGE, fd, 0L, len, offset);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepFallocate(long sqe, int fd, int mode, long offset, long len) {
+        IoUringSQE.prepRw(sqe, IORING_OP_FALLOCATE, fd, 0L, mode, offset);
+        IoUringSQE.addr(sqe, len);
+    }
+
+    public static void prepUnlinkat(long sqe, int dfd, MemorySegment path, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_UNLINKAT, dfd, path.address(), 0, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepRenameat(long sqe, int oldDfd, MemorySegment oldPath, int newDfd, MemorySegment newPath, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_RENAMEAT, oldDfd, oldPath.address(), newDfd, newPath.address());
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepMkdirat(long sqe, int dfd, MemorySegment path, int mode) {
+        IoUringSQE.prepRw(sqe, IORING_OP_MKDIRAT, dfd, path.address(), mode, 0L);
     }
 
     public static void prepShutdown(long sqe, int sockfd, int how) {
-        invokeWithArgumentsVoidUnchecked(prepShutdownHandle, sqe, sockfd, how);
+        IoUringSQE.prepRw(sqe, IORING_OP_SHUTDOWN, sockfd, 0L, how, 0L);
     }
 
     public static void prepRead(long sqe, int fd, MemorySegment buf, int nbytes, long offset) {
-        invokeWithArgumentsVoidUnchecked(prepReadHandle, sqe, fd, buf, nbytes, offset);
+        IoUringSQE.prepRw(sqe, IORING_OP_READ, fd, buf.address(), nbytes, offset);
     }
 
     public static void prepWrite(long sqe, int fd, MemorySegment buf, int nbytes, long offset) {
-        invokeWithArgumentsVoidUnchecked(prepWriteHandle, sqe, fd, buf, nbytes, offset);
+        IoUringSQE.prepRw(sqe, IORING_OP_WRITE, fd, buf.address(), nbytes, offset);
+    }
+
+    // buf has to lie within registered buffer bufIndex
+    public static void prepReadFixed(long sqe, int fd, MemorySegment buf, int nbytes, long offset, int bufIndex) {
+        IoUringSQE.prepRw(sqe, IORING_OP_READ_FIXED, fd, buf.address(), nbytes, offset);
+        IoUringSQE.bufIndex(sqe, bufIndex);
+    }
+
+    public static void prepWriteFixed(long sqe, int fd, MemorySegment buf, int nbytes, long offset, int bufIndex) {
+        IoUringSQE.prepRw(sqe, IORING_OP_WRITE_FIXED, fd, buf.address(), nbytes, offset);
+        IoUringSQE.bufIndex(sqe, bufIndex);
+    }
+
+    public static void prepReadv(long sqe, int fd, MemorySegment iovecs, int nrVecs, long offset) {
+        IoUringSQE.prepRw(sqe, IORING_OP_READV, fd, iovecs.address(), nrVecs, offset);
+    }
+
+    public static void prepWritev(long sqe, int fd, MemorySegment iovecs, int nrVecs, long offset) {
+        IoUringSQE.prepRw(sqe, IORING_OP_WRITEV, fd, iovecs.address(), nrVecs, offset);
+    }
+
+    public static void prepRecvmsg(long sqe, int fd, MemorySegment msg, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_RECVMSG, fd, msg.address(), 1, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    // msg only gives the name and control lengths, the data goes into provided buffers
+    public static void prepRecvmsgMultishot(long sqe, int fd, MemorySegment msg, int flags) {
+        prepRecvmsg(sqe, fd, msg, flags);
+        IoUringSQE.ioprio(sqe, IORING_RECV_MULTISHOT);
+    }
+
+    public static void prepSendmsg(long sqe, int fd, MemorySegment msg, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_SENDMSG, fd, msg.address(), 1, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    /*
+     * moves nbytes from fdIn to fdOut, one of them a pipe. an offset of -1 uses the file
+     * position, and has to be used for pipes. SPLICE_F_FD_IN_FIXED makes fdIn a fixed file.
+     */
+    public static void prepSplice(long sqe, int fdIn, long offIn, int fdOut, long offOut, int nbytes, int spliceFlags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_SPLICE, fdOut, 0L, nbytes, offOut);
+        IoUringSQE.addr(sqe, offIn);
+        IoUringSQE.fileIndex(sqe, fdIn);
+        IoUringSQE.opFlags(sqe, spliceFlags);
+    }
+
+    // duplicates nbytes from pipe fdIn into pipe fdOut without consuming them
+    public static void prepTee(long sqe, int fdIn, int fdOut, int nbytes, int spliceFlags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_TEE, fdOut, 0L, nbytes, 0L);
+        IoUringSQE.fileIndex(sqe, fdIn);
+        IoUringSQE.opFlags(sqe, spliceFlags);
     }
 
     public static void prepRecv(long sqe, int sockfd, MemorySegment buf, long len, int flags) {
-        invokeWithArgumentsVoidUnchecked(prepRecvHandle, sqe, sockfd, buf, len, flags);
+        IoUringSQE.prepRw(sqe, IORING_OP_RECV, sockfd, buf.address(), (int) len, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    // keeps posting a cqe per received chunk, needs a buffer group set with sqeSetBufferSelect
+    public static void prepRecvMultishot(long sqe, int sockfd, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_RECV, sockfd, 0L, 0, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+        IoUringSQE.ioprio(sqe, IORING_RECV_MULTISHOT);
     }
 
     public static void prepSend(long sqe, int sockfd, MemorySegment buf, long len, int flags) {
-        invokeWithArgumentsVoidUnchecked(prepSendHandle, sqe, sockfd, buf, len, flags);
+        IoUringSQE.prepRw(sqe, IORING_OP_SEND, sockfd, buf.address(), (int) len, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepSendFixed(long sqe, int sockfd, MemorySegment buf, long len, int flags, int bufIndex) {
+        prepSend(sqe, sockfd, buf, len, flags);
+        IoUringSQE.ioprio(sqe, IORING_RECVSEND_FIXED_BUF);
+        IoUringSQE.bufIndex(sqe, bufIndex);
+    }
+
+    // zcFlags are IORING_RECVSEND_* and IORING_SEND_ZC_* flags
+    public static void prepSendZc(long sqe, int sockfd, MemorySegment buf, long len, int flags, int zcFlags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_SEND_ZC, sockfd, buf.address(), (int) len, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+        IoUringSQE.ioprio(sqe, zcFlags);
+    }
+
+    public static void prepSendZcFixed(long sqe, int sockfd, MemorySegment buf, long len, int flags, int zcFlags, int bufIndex) {
+        prepSendZc(sqe, sockfd, buf, len, flags, zcFlags | IORING_RECVSEND_FIXED_BUF);
+        IoUringSQE.bufIndex(sqe, bufIndex);
+    }
+
+    public static void prepSendmsgZc(long sqe, int fd, MemorySegment msg, int flags) {
+        prepSendmsg(sqe, fd, msg, flags);
+        IoUringSQE.opcode(sqe, IORING_OP_SENDMSG_ZC);
     }
 
     public static void prepTimeout(long sqe, MemorySegment ts, int count, int flags) {
-        invokeWithArgumentsVoidUnchecked(prepTimeoutHandle, sqe, ts, count, flags);
+        IoUringSQE.prepRw(sqe, IORING_OP_TIMEOUT, -1, ts.address(), 1, count);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    // bounds the sqe linked before it, ts must be valid until the sqe is submitted
+    public static void prepLinkTimeout(long sqe, MemorySegment ts, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_LINK_TIMEOUT, -1, ts.address(), 1, 0L);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepTimeoutRemove(long sqe, long user_data, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_TIMEOUT_REMOVE, -1, 0L, 0, 0L);
+        IoUringSQE.addr(sqe, user_data);
+        IoUringSQE.opFlags(sqe, flags);
+    }
+
+    public static void prepTimeoutUpdate(long sqe, MemorySegment ts, long user_data, int flags) {
+        IoUringSQE.prepRw(sqe, IORING_OP_TIMEOUT_REMOVE, -1, 0L, 0, ts.address());
+        IoUringSQE.addr(sqe, user_data);
+        IoUringSQE.opFlags(sqe, flags | IORING_TIMEOUT_UPDATE);
     }
 
     public static void prepPollAdd(long sqe, int fd, int poll_mask) {
-        invokeWithArgumentsVoidUnchecked(prepPollAddHandle, sqe, fd, poll_mask);
+        IoUringSQE.prepRw(sqe, IORING_OP_POLL_ADD, fd, 0L, 0, 0L);
+        IoUringSQE.opFlags(sqe, poll_mask);
     }
 
     public static void prepCancel64(long sqe, long user_data, int flags) {
-        invokeWithArgumentsVoidUnchecked(prepCancel64Handle, sqe, user_data, flags);
+        IoUringSQE.prepRw(sqe, IORING_OP_ASYNC_CANCEL, -1, 0L, 0, 0L);
+        IoUringSQE.addr(sqe, user_data);
+        IoUringSQE.opFlags(sqe, flags);
     }
 
     public static void prepCancel(long sqe, long user_data, int flags) {
-        invokeWithArgumentsVoidUnchecked(prepCancelHandle, sqe, user_data, flags);
-    }
-
-    public long getSqe() {
-        return (long) invokeWithArgumentsUnchecked(getSqeHandle, ringAddress);
+        prepCancel64(sqe, user_data, flags);
     }
 
     public int submit() throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(submitHandle, ringAddress);
+        int res;
+        try {
+            res = (int) submitHandle.invokeExact(ringAddress);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
@@ -284,23 +688,258 @@ public class IoUring {
     }
 
     public int submitAndWait(int wait_nr) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(submitAndWaitHandle, ringAddress, wait_nr);
+        int res;
+        try {
+            res = (int) submitAndWaitHandle.invokeExact(ringAddress, wait_nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
         return res;
     }
 
+    /*
+     * enter the kernel without submitting, to reap overflowed completions, run
+     * deferred task work, or block until waitNr completions are available
+     */
+    public int getEvents(int waitNr) throws UnixException {
+        int res;
+        try {
+            res = (int) enterHandle.invokeExact(ringAddress, 0, waitNr, IORING_ENTER_GETEVENTS);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+        return res;
+    }
+
+    /*
+     * cq ring:
+     * 0                        n-1
+     * |......head......tail......|
+     *
+     * the kernel publishes completions by storing ktail with release semantics,
+     * we hand the slots back by storing khead with release semantics. we are
+     * the only writer of khead, so it can be read plainly.
+     */
+    public int cqHead() {
+        return cqKhead.get(JAVA_INT, 0L);
+    }
+
+    public int cqTail() {
+        return (int) UINT.getAcquire(cqKtail, 0L);
+    }
+
+    public void cqAdvance(int head) {
+        UINT.setRelease(cqKhead, 0L, head);
+    }
+
+    public int cqReady() {
+        return cqTail() - cqHead();
+    }
+
+    public long cqeUserData(int head) {
+        return getUserData(cqes, head & cqMask);
+    }
+
+    public int cqeResult(int head) {
+        return getResult(cqes, head & cqMask);
+    }
+
+    public int cqeFlags(int head) {
+        return getFlags(cqes, head & cqMask);
+    }
+
+    // completions are waiting in the kernel's overflow list, or task work has to be run
+    public boolean cqNeedsFlush() {
+        return ((int) UINT.getOpaque(sqKflags, 0L) & (IORING_SQ_CQ_OVERFLOW | IORING_SQ_TASKRUN)) != 0;
+    }
+
+    private int copyCqesReady(MemorySegment dst, int dstLen) {
+        int head = cqHead();
+        int count = Math.min(cqTail() - head, dstLen);
+        for(int i = 0; i < count; i++) {
+            MemorySegment.copy(cqes, (long) ((head + i) & cqMask) * CQE_SIZE, dst, (long) i * CQE_SIZE, CQE_SIZE);
+        }
+        cqAdvance(head + count);
+        return count;
+    }
+
+    //inspired by implementation of zig implementation in std.os.linux.IoUring.copy_cqes()
     public int copyCqes(MemorySegment cqes, int cqeslen, int waitnr) throws UnixException {
-        int res = (int) invokeWithArgumentsUnchecked(copyCqesHandle, ringAddress, cqes, cqeslen, waitnr);
+        int count = copyCqesReady(cqes, cqeslen);
+        if(count > 0) {
+            return count;
+        }
+        if(cqNeedsFlush() || waitnr > 0) {
+            getEvents(waitnr);
+            return copyCqesReady(cqes, cqeslen);
+        }
+        return 0;
+    }
+
+    /*
+     * allocates and registers a provided buffer ring of nentries (a power of 2) for
+     * buffer group bgid, returns the address of its struct io_uring_buf_ring
+     */
+    public long setupBufRing(int nentries, int bgid, int flags) throws UnixException {
+        long res;
+        try {
+            res = (long) setupBufRingHandle.invokeExact(ringAddress, nentries, bgid, flags);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0L) {
+            unixException((int) res);
+        }
+        return res;
+    }
+
+    public void freeBufRing(long bufRing, int nentries, int bgid) throws UnixException {
+        int res;
+        try {
+            res = (int) freeBufRingHandle.invokeExact(ringAddress, bufRing, nentries, bgid);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    /*
+     * registered buffers are pinned and mapped once, instead of on every read and write.
+     * iovecs is an array of nr struct iovec, only needed for the duration of the call.
+     */
+    public void registerBuffers(MemorySegment iovecs, int nr) throws UnixException {
+        int res;
+        try {
+            res = (int) registerBuffersHandle.invokeExact(ringAddress, iovecs.address(), nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    // an empty table of nr buffers, to be filled with updateBuffers()
+    public void registerBuffersSparse(int nr) throws UnixException {
+        int res;
+        try {
+            res = (int) registerBuffersSparseHandle.invokeExact(ringAddress, nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    // replaces the nr registered buffers starting at offset, an iovec with a NULL base clears a slot
+    public void updateBuffers(int offset, MemorySegment iovecs, int nr) throws UnixException {
+        int res;
+        try {
+            res = (int) registerBuffersUpdateHandle.invokeExact(ringAddress, offset, iovecs.address(), nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    public void unregisterBuffers() throws UnixException {
+        int res;
+        try {
+            res = (int) unregisterBuffersHandle.invokeExact(ringAddress);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    /*
+     * fixed files: operations flagged with IOSQE_FIXED_FILE address a slot of this
+     * table instead of an fd, which saves the fdget/fdput of every submission.
+     * fds is an array of nr ints, -1 leaves a slot empty.
+     */
+    public void registerFiles(MemorySegment fds, int nr) throws UnixException {
+        int res;
+        try {
+            res = (int) registerFilesHandle.invokeExact(ringAddress, fds.address(), nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    // an empty table of nr slots, direct descriptors are allocated from it
+    public void registerFilesSparse(int nr) throws UnixException {
+        int res;
+        try {
+            res = (int) registerFilesSparseHandle.invokeExact(ringAddress, nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    // replaces nr slots starting at offset, returns the number of slots updated
+    public int registerFilesUpdate(int offset, MemorySegment fds, int nr) throws UnixException {
+        int res;
+        try {
+            res = (int) registerFilesUpdateHandle.invokeExact(ringAddress, offset, fds.address(), nr);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
         if(res < 0) {
             unixException(res);
         }
         return res;
     }
 
+    public void unregisterFiles() throws UnixException {
+        int res;
+        try {
+            res = (int) unregisterFilesHandle.invokeExact(ringAddress);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
+    // slots IORING_FILE_INDEX_ALLOC may pick from
+    public void registerFileAllocRange(int offset, int len) throws UnixException {
+        int res;
+        try {
+            res = (int) registerFileAllocRangeHandle.invokeExact(ringAddress, offset, len);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if(res < 0) {
+            unixException(res);
+        }
+    }
+
     public void queueExit() {
-        invokeWithArgumentsVoidUnchecked(queueExitHandle, ringAddress);
+        try {
+            queueExitHandle.invokeExact(ringAddress);
+        } catch(Throwable t) {
+            throw new RuntimeException(t);
+        }
     }
 
 
@@ -311,6 +950,18 @@ public class IoUring {
      * close
      * read
      * write
+     * readv
+     * writev
+     * splice
+     * tee
+     * openat
+     * statx
+     * fsync
+     * sync_file_range
+     * fallocate
+     * unlinkat
+     * renameat
+     * mkdirat
      * recv
      * send
      * recvmsg
@@ -0,0 +1,137 @@
+package io.sev.uring;
+
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/*
+ * plain java stores into a struct io_uring_sqe living in the mmapped sqe array,
+ * mirroring the static inline io_uring_prep_* helpers of liburing
+ */
+public class IoUringSQE {
+
+    /*
+     * struct io_uring_sqe {
+     *   __u8 opcode;             0
+     *   __u8 flags;              1
+     *   __u16 ioprio;            2
+     *   __s32 fd;                4
+     *   __u64 off / addr2;       8
+     *   __u64 addr;              16
+     *   __u32 len;               24
+     *   __u32 rw_flags / ...;    28
+     *   __u64 user_data;         32
+     *   __u16 buf_index / buf_group; 40
+     *   __u16 personality;       42
+     *   __s32 file_index / splice_fd_in; 44
+     *   __u64 addr3;             48
+     *   __u64 __pad2[1];         56
+     * }
+     */
+    public static final int SQE_SIZE = 64;
+
+    private static final long OPCODE = 0L;
+    private static final long FLAGS = 1L;
+    private static final long IOPRIO = 2L;
+    private static final long FD = 4L;
+    private static final long OFF = 8L;
+    private static final long ADDR = 16L;
+    private static final long LEN = 24L;
+    private static final long OP_FLAGS = 28L;
+    private static final long USER_DATA = 32L;
+    private static final long BUF_INDEX = 40L;
+    private static final long PERSONALITY = 42L;
+    private static final long FILE_INDEX = 44L;
+    private static final long ADDR3 = 48L;
+    private static final long PAD2 = 56L;
+
+    // sqes are addressed by their absolute address, as returned by IoUring.getSqe()
+    private static final MemorySegment ALL = MemorySegment.NULL.reinterpret(Long.MAX_VALUE);
+
+    // equivalent of io_uring_initialize_sqe(), done when an sqe is handed out
+    static void initialize(long sqe) {
+        ALL.set(JAVA_BYTE, sqe + FLAGS, (byte) 0);
+        ALL.set(JAVA_SHORT, sqe + IOPRIO, (short) 0);
+        ALL.set(JAVA_INT, sqe + OP_FLAGS, 0);
+        ALL.set(JAVA_SHORT, sqe + BUF_INDEX, (short) 0);
+        ALL.set(JAVA_SHORT, sqe + PERSONALITY, (short) 0);
+        ALL.set(JAVA_INT, sqe + FILE_INDEX, 0);
+        ALL.set(JAVA_LONG, sqe + ADDR3, 0L);
+        ALL.set(JAVA_LONG, sqe + PAD2, 0L);
+    }
+
+    public static void prepRw(long sqe, int op, int fd, long addr, int len, long off) {
+        ALL.set(JAVA_BYTE, sqe + OPCODE, (byte) op);
+        ALL.set(JAVA_INT, sqe + FD, fd);
+        ALL.set(JAVA_LONG, sqe + OFF, off);
+        ALL.set(JAVA_LONG, sqe + ADDR, addr);
+        ALL.set(JAVA_INT, sqe + LEN, len);
+    }
+
+    public static void opcode(long sqe, int opcode) {
+        ALL.set(JAVA_BYTE, sqe + OPCODE, (byte) opcode);
+    }
+
+    public static void flags(long sqe, int flags) {
+        ALL.set(JAVA_BYTE, sqe + FLAGS, (byte) flags);
+    }
+
+    public static void orFlags(long sqe, int flags) {
+        ALL.set(JAVA_BYTE, sqe + FLAGS, (byte) (ALL.get(JAVA_BYTE, sqe + FLAGS) | flags));
+    }
+
+    public static void ioprio(long sqe, int ioprio) {
+        ALL.set(JAVA_SHORT, sqe + IOPRIO, (short) ioprio);
+    }
+
+    public static void fd(long sqe, int fd) {
+        ALL.set(JAVA_INT, sqe + FD, fd);
+    }
+
+    public static void off(long sqe, long off) {
+        ALL.set(JAVA_LONG, sqe + OFF, off);
+    }
+
+    public static void addr(long sqe, long addr) {
+        ALL.set(JAVA_LONG, sqe + ADDR, addr);
+    }
+
+    public static void len(long sqe, int len) {
+        ALL.set(JAVA_INT, sqe + LEN, len);
+    }
+
+    // rw_flags, accept_flags, msg_flags, timeout_flags, cancel_flags, poll32_events, ...
+    public static void opFlags(long sqe, int opFlags) {
+        ALL.set(JAVA_INT, sqe + OP_FLAGS, opFlags);
+    }
+
+    public static void userData(long sqe, long userData) {
+        ALL.set(JAVA_LONG, sqe + USER_DATA, userData);
+    }
+
+    public static long userData(long sqe) {
+        return ALL.get(JAVA_LONG, sqe + USER_DATA);
+    }
+
+    // buf_index and buf_group share the same field
+    public static void bufIndex(long sqe, int bufIndex) {
+        ALL.set(JAVA_SHORT, sqe + BUF_INDEX, (short) bufIndex);
+    }
+
+    public static void personality(long sqe, int personality) {
+        ALL.set(JAVA_SHORT, sqe + PERSONALITY, (short) personality);
+    }
+
+    // file_index and splice_fd_in share the same field
+    public static void fileIndex(long sqe, int fileIndex) {
+        ALL.set(JAVA_INT, sqe + FILE_INDEX, fileIndex);
+    }
+
+    public static void addr3(long sqe, long addr3) {
+        ALL.set(JAVA_LONG, sqe + ADDR3, addr3);
+    }
+
+}
@@ -0,0 +1,141 @@
+package io.sev.uring;
+
+import static io.sev.util.unix.Macros.*;
+
+/*
+ * setup parameters of a ring. modes the running kernel doesn't know are dropped one
+ * by one when the ring is created, IoUring.flags() tells which ones were kept.
+ *
+ * UringConfig config = new UringConfig()
+ *                         .entries(4096)
+ *                         .cqEntries(16384)
+ *                         .singleIssuer(true)
+ *                         .deferTaskrun(true);
+ */
+public class UringConfig {
+
+    public int entries = 512;
+
+    // 0 for the kernel default of twice entries
+    public int cqEntries = 0;
+
+    public boolean sqPoll = false;
+
+    // how long the sq thread spins before it sleeps and needs a wakeup
+    public int sqThreadIdleMs = 0;
+
+    // cpu to pin the sq thread to, -1 for none
+    public int sqThreadCpu = -1;
+
+    public boolean coopTaskrun = false;
+
+    public boolean taskrunFlag = false;
+
+    public boolean singleIssuer = false;
+
+    public boolean deferTaskrun = false;
+
+    // UringLoop submits as soon as this many sqes are waiting, 0 leaves submitting to the loop's iteration
+    public int submitBatch = 0;
+
+    /*
+     * completions UringLoop keeps waiting for sqes when the kernel can't take more, new
+     * ones past it complete with -EBUSY right away. 0 for no limit.
+     */
+    public int maxUnqueued = 0;
+
+    public UringConfig() {
+    }
+
+    public UringConfig entries(int entries) {
+        this.entries = entries;
+        return this;
+    }
+
+    public UringConfig cqEntries(int cqEntries) {
+        this.cqEntries = cqEntries;
+        return this;
+    }
+
+    public UringConfig sqPoll(boolean sqPoll) {
+        this.sqPoll = sqPoll;
+        return this;
+    }
+
+    public UringConfig sqThreadIdleMs(int sqThreadIdleMs) {
+        this.sqThreadIdleMs = sqThreadIdleMs;
+        return this;
+    }
+
+    public UringConfig sqThreadCpu(int sqThreadCpu) {
+        this.sqThreadCpu = sqThreadCpu;
+        return this;
+    }
+
+    public UringConfig coopTaskrun(boolean coopTaskrun) {
+        this.coopTaskrun = coopTaskrun;
+        return this;
+    }
+
+    public UringConfig taskrunFlag(boolean taskrunFlag) {
+        this.taskrunFlag = taskrunFlag;
+        return this;
+    }
+
+    public UringConfig singleIssuer(boolean singleIssuer) {
+        this.singleIssuer = singleIssuer;
+        return this;
+    }
+
+    // task work only runs when the loop waits for completions, implies singleIssuer
+    public UringConfig deferTaskrun(boolean deferTaskrun) {
+        this.deferTaskrun = deferTaskrun;
+        return this;
+    }
+
+    public UringConfig submitBatch(int submitBatch) {
+        this.submitBatch = submitBatch;
+        return this;
+    }
+
+    public UringConfig maxUnqueued(int maxUnqueued) {
+        this.maxUnqueued = maxUnqueued;
+        return this;
+    }
+
+    // throws IllegalArgumentException for modes the kernel never accepts together
+    public int setupFlags() {
+        if(sqPoll && (coopTaskrun || taskrunFlag || deferTaskrun)) {
+            // the sq thread submits, there is no task to interrupt or defer work to
+            throw new IllegalArgumentException("sqPoll can't be combined with coopTaskrun, taskrunFlag or deferTaskrun");
+        }
+        if(taskrunFlag && !coopTaskrun && !deferTaskrun) {
+            throw new IllegalArgumentException("taskrunFlag needs coopTaskrun or deferTaskrun");
+        }
+        int flags = 0;
+        if(cqEntries > 0) {
+            flags |= IORING_SETUP_CQSIZE;
+        }
+        if(sqPoll) {
+            flags |= IORING_SETUP_SQPOLL;
+            if(sqThreadCpu >= 0) {
+                flags |= IORING_SETUP_SQ_AFF;
+            }
+        }
+        if(coopTaskrun) {
+            flags |= IORING_SETUP_COOP_TASKRUN;
+        }
+        if(taskrunFlag) {
+            flags |= IORING_SETUP_TASKRUN_FLAG;
+        }
+        if(singleIssuer || deferTaskrun) {
+            flags |= IORING_SETUP_SINGLE_ISSUER;
+        }
+        if(deferTaskrun) {
+            // IORING_SQ_TASKRUN tells the loop when deferred work is pending
+            flags |= IORING_SETUP_DEFER_TASKRUN | IORING_SETUP_TASKRUN_FLAG;
+        }
+        return flags;
+    }
+
+}
@@ -0,0 +1,52 @@
+package io.sev.util.iovec;
+
+import static java.lang.foreign.MemoryLayout.structLayout;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+
+public class IovecUtil {
+
+    /*
+     * struct iovec {
+     *   void *iov_base;    0
+     *   size_t iov_len;    8
+     * }
+     */
+    public static final MemoryLayout IOVEC_LAYOUT = structLayout(JAVA_LONG, JAVA_LONG);
+
+    public static final long IOVEC_SIZE = 16L;
+
+    public static MemorySegment iovecs(int count, SegmentAllocator allocator) {
+        return allocator.allocate(IOVEC_SIZE * count, 8L);
+    }
+
+    // an array of iovecs covering buffers, in order
+    public static MemorySegment iovecs(SegmentAllocator allocator, MemorySegment... buffers) {
+        MemorySegment iovecs = iovecs(buffers.length, allocator);
+        for(int i = 0; i < buffers.length; i++) {
+            setIovec(iovecs, i, buffers[i]);
+        }
+        return iovecs;
+    }
+
+    public static void setIovec(MemorySegment iovecs, int index, MemorySegment buffer) {
+        setIovec(iovecs, index, buffer.address(), buffer.byteSize());
+    }
+
+    public static void setIovec(MemorySegment iovecs, int index, long base, long len) {
+        iovecs.set(JAVA_LONG, index * IOVEC_SIZE, base);
+        iovecs.set(JAVA_LONG, index * IOVEC_SIZE + 8L, len);
+    }
+
+    public static long getIovBase(MemorySegment iovecs, int index) {
+        return iovecs.get(JAVA_LONG, index * IOVEC_SIZE);
+    }
+
+    public static long getIovLen(MemorySegment iovecs, int index) {
+        return iovecs.get(JAVA_LONG, index * IOVEC_SIZE + 8L);
+    }
+
+}
@@ -0,0 +1,71 @@
+package io.sev.util.iovec;
+
+import static io.sev.util.iovec.IovecUtil.*;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+
+/*
+ * a reusable off-heap iovec array for readv, writev, sendmsg and recvmsg. allocated once
+ * with room for capacity buffers, then cleared and refilled for every operation.
+ *
+ * Iovecs iovecs = new Iovecs(2, allocator);
+ * iovecs.clear()
+ *       .add(header)
+ *       .add(payload);
+ * loop.enqueue(new UringCompletion().operation(new Operation.Writev().fd(fd).iovecs(iovecs)) ...);
+ *
+ * the array must stay untouched until the operation using it has been submitted.
+ */
+public final class Iovecs {
+
+    private final MemorySegment iovecs;
+
+    private final int capacity;
+
+    private int count = 0;
+
+    private long length = 0L;
+
+    public Iovecs(int capacity, SegmentAllocator allocator) {
+        this.iovecs = iovecs(capacity, allocator);
+        this.capacity = capacity;
+    }
+
+    public Iovecs clear() {
+        count = 0;
+        length = 0L;
+        return this;
+    }
+
+    public Iovecs add(MemorySegment buffer) {
+        return add(buffer.address(), buffer.byteSize());
+    }
+
+    public Iovecs add(long base, long len) {
+        if(count == capacity) {
+            throw new IndexOutOfBoundsException("iovec array is full");
+        }
+        setIovec(iovecs, count++, base, len);
+        length += len;
+        return this;
+    }
+
+    public MemorySegment segment() {
+        return iovecs;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // total bytes covered by the iovecs added so far
+    public long length() {
+        return length;
+    }
+
+}
@@ -0,0 +1,139 @@
+package io.sev.util.iovec;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+
+/*
+ * a reusable off-heap struct msghdr for sendmsg and recvmsg.
+ *
+ * struct msghdr {
+ *   void *msg_name;          0
+ *   socklen_t msg_namelen;   8
+ *   struct iovec *msg_iov;   16
+ *   size_t msg_iovlen;       24
+ *   void *msg_control;       32
+ *   size_t msg_controllen;   40
+ *   int msg_flags;           48
+ * }
+ *
+ * for a multishot recvmsg the msghdr only describes how much room the name and control
+ * data get, each completion's provided buffer starts with a struct io_uring_recvmsg_out
+ * followed by the name, the control data and the payload. name(), payload() and friends
+ * take such a buffer apart.
+ */
+public final class Msghdr {
+
+    public static final long MSGHDR_SIZE = 56L;
+
+    private static final long MSG_NAME = 0L;
+    private static final long MSG_NAMELEN = 8L;
+    private static final long MSG_IOV = 16L;
+    private static final long MSG_IOVLEN = 24L;
+    private static final long MSG_CONTROL = 32L;
+    private static final long MSG_CONTROLLEN = 40L;
+    private static final long MSG_FLAGS = 48L;
+
+    /*
+     * struct io_uring_recvmsg_out {
+     *   __u32 namelen;       0
+     *   __u32 controllen;    4
+     *   __u32 payloadlen;    8
+     *   __u32 flags;         12
+     * }
+     */
+    public static final long RECVMSG_OUT_SIZE = 16L;
+
+    private static final long OUT_NAMELEN = 0L;
+    private static final long OUT_CONTROLLEN = 4L;
+    private static final long OUT_PAYLOADLEN = 8L;
+    private static final long OUT_FLAGS = 12L;
+
+    private final MemorySegment msghdr;
+
+    public Msghdr(SegmentAllocator allocator) {
+        this.msghdr = allocator.allocate(MSGHDR_SIZE, 8L);
+    }
+
+    // clears every field, for reuse with another operation
+    public Msghdr clear() {
+        msghdr.fill((byte) 0);
+        return this;
+    }
+
+    // the peer address, sent to or received into addr
+    public Msghdr name(MemorySegment addr, int addrLen) {
+        msghdr.set(JAVA_LONG, MSG_NAME, addr.address());
+        msghdr.set(JAVA_INT, MSG_NAMELEN, addrLen);
+        return this;
+    }
+
+    public Msghdr iov(MemorySegment iovecs, int count) {
+        msghdr.set(JAVA_LONG, MSG_IOV, iovecs.address());
+        msghdr.set(JAVA_LONG, MSG_IOVLEN, (long) count);
+        return this;
+    }
+
+    public Msghdr iov(Iovecs iovecs) {
+        return iov(iovecs.segment(), iovecs.count());
+    }
+
+    public Msghdr control(MemorySegment control, long controlLen) {
+        msghdr.set(JAVA_LONG, MSG_CONTROL, control.address());
+        msghdr.set(JAVA_LONG, MSG_CONTROLLEN, controlLen);
+        return this;
+    }
+
+    // room for the name and control data in each buffer of a multishot recvmsg, no memory needed
+    public Msghdr lengths(int nameLen, long controlLen) {
+        msghdr.set(JAVA_INT, MSG_NAMELEN, nameLen);
+        msghdr.set(JAVA_LONG, MSG_CONTROLLEN, controlLen);
+        return this;
+    }
+
+    public int nameLen() {
+        return msghdr.get(JAVA_INT, MSG_NAMELEN);
+    }
+
+    public long controlLen() {
+        return msghdr.get(JAVA_LONG, MSG_CONTROLLEN);
+    }
+
+    // MSG_TRUNC, MSG_CTRUNC, ... as set by a recvmsg
+    public int flags() {
+        return msghdr.get(JAVA_INT, MSG_FLAGS);
+    }
+
+    public MemorySegment segment() {
+        return msghdr;
+    }
+
+    // the name in a multishot recvmsg buffer, cut to the length the kernel reported
+    public MemorySegment name(MemorySegment buf) {
+        int len = Math.min(buf.get(JAVA_INT, OUT_NAMELEN), nameLen());
+        return buf.asSlice(RECVMSG_OUT_SIZE, len);
+    }
+
+    public MemorySegment control(MemorySegment buf) {
+        long len = Math.min(Integer.toUnsignedLong(buf.get(JAVA_INT, OUT_CONTROLLEN)), controlLen());
+        return buf.asSlice(RECVMSG_OUT_SIZE + nameLen(), len);
+    }
+
+    // the payload in a multishot recvmsg buffer of result bytes
+    public MemorySegment payload(MemorySegment buf, int result) {
+        long offset = RECVMSG_OUT_SIZE + nameLen() + controlLen();
+        return buf.asSlice(offset, result - offset);
+    }
+
+    // payload length before truncation to the buffer
+    public static int payloadLen(MemorySegment buf) {
+        return buf.get(JAVA_INT, OUT_PAYLOADLEN);
+    }
+
+    public static int outFlags(MemorySegment buf) {
+        return buf.get(JAVA_INT, OUT_FLAGS);
+    }
+
+}
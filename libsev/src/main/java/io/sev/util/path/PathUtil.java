@@ -0,0 +1,29 @@
+package io.sev.util.path;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+public class PathUtil {
+
+    /*
+     * a nul terminated path, as taken by Operation.OpenAt, Statx, UnlinkAt, RenameAt and
+     * MkdirAt. it has to stay valid until the operation completed, the kernel may only
+     * read it once the operation runs in the background.
+     */
+    public static MemorySegment path(String path, SegmentAllocator allocator) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        MemorySegment pathSegment = allocator.allocate(bytes.length + 1L);
+        MemorySegment.copy(bytes, 0, pathSegment, JAVA_BYTE, 0L, bytes.length);
+        pathSegment.set(JAVA_BYTE, bytes.length, (byte) 0);
+        return pathSegment;
+    }
+
+    public static MemorySegment path(Path path, SegmentAllocator allocator) {
+        return path(path.toString(), allocator);
+    }
+
+}
@@ -0,0 +1,131 @@
+package io.sev.util.statx;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+public class StatxUtil {
+
+    /*
+     * struct statx {
+     *   __u32 stx_mask;                          0
+     *   __u32 stx_blksize;                       4
+     *   __u64 stx_attributes;                    8
+     *   __u32 stx_nlink;                         16
+     *   __u32 stx_uid;                           20
+     *   __u32 stx_gid;                           24
+     *   __u16 stx_mode;                          28
+     *   __u64 stx_ino;                           32
+     *   __u64 stx_size;                          40
+     *   __u64 stx_blocks;                        48
+     *   __u64 stx_attributes_mask;               56
+     *   struct statx_timestamp stx_atime;        64
+     *   struct statx_timestamp stx_btime;        80
+     *   struct statx_timestamp stx_ctime;        96
+     *   struct statx_timestamp stx_mtime;        112
+     *   ...
+     * }                                          256
+     *
+     * struct statx_timestamp {
+     *   __s64 tv_sec;     0
+     *   __u32 tv_nsec;    8
+     * }
+     */
+    public static final long STATX_STRUCT_SIZE = 256L;
+
+    private static final long STX_MASK = 0L;
+    private static final long STX_BLKSIZE = 4L;
+    private static final long STX_NLINK = 16L;
+    private static final long STX_UID = 20L;
+    private static final long STX_GID = 24L;
+    private static final long STX_MODE = 28L;
+    private static final long STX_INO = 32L;
+    private static final long STX_SIZE = 40L;
+    private static final long STX_BLOCKS = 48L;
+    private static final long STX_ATIME = 64L;
+    private static final long STX_BTIME = 80L;
+    private static final long STX_CTIME = 96L;
+    private static final long STX_MTIME = 112L;
+
+    private static final long NSEC_PER_SEC = 1_000_000_000L;
+
+    // S_IFMT bits of the mode
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFDIR = 0040000;
+    private static final int S_IFREG = 0100000;
+
+    public static MemorySegment statx(SegmentAllocator allocator) {
+        return allocator.allocate(STATX_STRUCT_SIZE, 8L);
+    }
+
+    // STATX_* fields the kernel filled in, may be fewer than asked for
+    public static int mask(MemorySegment statx) {
+        return statx.get(JAVA_INT, STX_MASK);
+    }
+
+    public static int blockSize(MemorySegment statx) {
+        return statx.get(JAVA_INT, STX_BLKSIZE);
+    }
+
+    public static int nlink(MemorySegment statx) {
+        return statx.get(JAVA_INT, STX_NLINK);
+    }
+
+    public static int uid(MemorySegment statx) {
+        return statx.get(JAVA_INT, STX_UID);
+    }
+
+    public static int gid(MemorySegment statx) {
+        return statx.get(JAVA_INT, STX_GID);
+    }
+
+    public static int mode(MemorySegment statx) {
+        return Short.toUnsignedInt(statx.get(JAVA_SHORT, STX_MODE));
+    }
+
+    public static boolean isDirectory(MemorySegment statx) {
+        return (mode(statx) & S_IFMT) == S_IFDIR;
+    }
+
+    public static boolean isRegularFile(MemorySegment statx) {
+        return (mode(statx) & S_IFMT) == S_IFREG;
+    }
+
+    public static long ino(MemorySegment statx) {
+        return statx.get(JAVA_LONG, STX_INO);
+    }
+
+    public static long size(MemorySegment statx) {
+        return statx.get(JAVA_LONG, STX_SIZE);
+    }
+
+    // in 512 byte units
+    public static long blocks(MemorySegment statx) {
+        return statx.get(JAVA_LONG, STX_BLOCKS);
+    }
+
+    // timestamps in ns since the epoch
+    public static long atimeNs(MemorySegment statx) {
+        return timestampNs(statx, STX_ATIME);
+    }
+
+    public static long btimeNs(MemorySegment statx) {
+        return timestampNs(statx, STX_BTIME);
+    }
+
+    public static long ctimeNs(MemorySegment statx) {
+        return timestampNs(statx, STX_CTIME);
+    }
+
+    public static long mtimeNs(MemorySegment statx) {
+        return timestampNs(statx, STX_MTIME);
+    }
+
+    private static long timestampNs(MemorySegment statx, long offset) {
+        return statx.get(JAVA_LONG, offset) * NSEC_PER_SEC + Integer.toUnsignedLong(statx.get(JAVA_INT, offset + 8L));
+    }
+
+}
@@ -15,6 +15,8 @@ public class TimespecUtil {
 
     public static final MemoryLayout TIMESPEC_LAYOUT = structLayout(JAVA_LONG, JAVA_LONG);
 
+    private static final long NSEC_PER_SEC = 1_000_000_000L;
+
     public static MemorySegment timespec(long tv_sec, long tv_nsec, SegmentAllocator allocator) {
         MemorySegment timespec = allocator.allocate(TIMESPEC_LAYOUT);
         timespec.setAtIndex(JAVA_LONG, 0, tv_sec);
@@ -23,16 +25,30 @@ public class TimespecUtil {
     }
 
     public static MemorySegment timespecNext(long ns, SegmentAllocator allocator) {
+        MemorySegment nextTs = allocator.allocate(TIMESPEC_LAYOUT);
+        timespecNext(ns, nextTs);
+        return nextTs;
+    }
+
+    // writes the CLOCK_MONOTONIC time ns from now into an existing timespec, without allocating
+    public static void timespecNext(long ns, MemorySegment ts) {
         try {
-            MemorySegment currentTs = callocSegment(1, 16);
-            clockGetTime(Macros.CLOCK_MONOTONIC, currentTs);
-            MemorySegment nextTs = timespec(getTvSec(currentTs), getTvNsec(currentTs) + ns, allocator);
-            free(currentTs);
-            return nextTs;
+            clockGetTime(Macros.CLOCK_MONOTONIC, ts);
         } catch(UnixException ex) {
             throw new RuntimeException(ex);
         }
+        long nsec = getTvNsec(ts) + ns;
+        ts.setAtIndex(JAVA_LONG, 0, getTvSec(ts) + nsec / NSEC_PER_SEC);
+        ts.setAtIndex(JAVA_LONG, 1, nsec % NSEC_PER_SEC);
+    }
+
+    public static void setTimespec(MemorySegment ts, long ns) {
+        ts.setAtIndex(JAVA_LONG, 0, ns / NSEC_PER_SEC);
+        ts.setAtIndex(JAVA_LONG, 1, ns % NSEC_PER_SEC);
+    }
 
+    public static long toNanos(MemorySegment ts) {
+        return getTvSec(ts) * NSEC_PER_SEC + getTvNsec(ts);
     }
 
     public static long getTvSec(MemorySegment ts) {
@@ -34,9 +34,146 @@ public class Macros {
 
     public static final int CLOCK_MONOTONIC = 1;
 
+    public static final int EFD_CLOEXEC = 02000000;
+    public static final int EFD_NONBLOCK = 04000;
+
+    public static final int AT_FDCWD = -100;
+
+    public static final int O_RDONLY = 00;
+    public static final int O_WRONLY = 01;
+    public static final int O_RDWR = 02;
+    public static final int O_CREAT = 0100;
+    public static final int O_EXCL = 0200;
+    public static final int O_TRUNC = 01000;
+    public static final int O_APPEND = 02000;
+    public static final int O_DIRECT = 040000;
+    public static final int O_CLOEXEC = 02000000;
+    public static final int O_DIRECTORY = 0200000;
+
+    public static final int AT_SYMLINK_NOFOLLOW = 0x100;
+    public static final int AT_REMOVEDIR = 0x200;
+    public static final int AT_EMPTY_PATH = 0x1000;
+
+    public static final int RENAME_NOREPLACE = 1;
+    public static final int RENAME_EXCHANGE = 2;
+
+    public static final int STATX_TYPE = 0x1;
+    public static final int STATX_MODE = 0x2;
+    public static final int STATX_NLINK = 0x4;
+    public static final int STATX_UID = 0x8;
+    public static final int STATX_GID = 0x10;
+    public static final int STATX_ATIME = 0x20;
+    public static final int STATX_MTIME = 0x40;
+    public static final int STATX_CTIME = 0x80;
+    public static final int STATX_INO = 0x100;
+    public static final int STATX_SIZE = 0x200;
+    public static final int STATX_BLOCKS = 0x400;
+    public static final int STATX_BASIC_STATS = 0x7ff;
+    public static final int STATX_BTIME = 0x800;
+
+    public static final int FALLOC_FL_KEEP_SIZE = 1;
+    public static final int FALLOC_FL_PUNCH_HOLE = 2;
+    public static final int FALLOC_FL_ZERO_RANGE = 0x10;
+
+    public static final int IORING_FSYNC_DATASYNC = 1;
+
+    public static final int SYNC_FILE_RANGE_WAIT_BEFORE = 1;
+    public static final int SYNC_FILE_RANGE_WRITE = 2;
+    public static final int SYNC_FILE_RANGE_WAIT_AFTER = 4;
+
+    public static final int IORING_SETUP_IOPOLL = 1;
     public static final int IORING_SETUP_SQPOLL = 2;
+    public static final int IORING_SETUP_SQ_AFF = 4;
+    public static final int IORING_SETUP_CQSIZE = 8;
+    public static final int IORING_SETUP_CLAMP = 16;
+    public static final int IORING_SETUP_SUBMIT_ALL = 128;
+    public static final int IORING_SETUP_COOP_TASKRUN = 256;
+    public static final int IORING_SETUP_TASKRUN_FLAG = 512;
+    public static final int IORING_SETUP_SINGLE_ISSUER = 4096;
+    public static final int IORING_SETUP_DEFER_TASKRUN = 8192;
+    public static final int IOSQE_FIXED_FILE = 1;
     public static final int IOSQE_IO_LINK = 4;
+    public static final int IOSQE_IO_HARDLINK = 8;
+    public static final int IOSQE_BUFFER_SELECT = 32;
     public static final int IORING_TIMEOUT_ABS = 1;
+    public static final int IORING_TIMEOUT_UPDATE = 2;
+    public static final int IORING_ACCEPT_MULTISHOT = 1;
+    public static final int IORING_RECVSEND_POLL_FIRST = 1;
+    public static final int IORING_RECV_MULTISHOT = 2;
+    public static final int IORING_RECVSEND_FIXED_BUF = 4;
+    public static final int IORING_SEND_ZC_REPORT_USAGE = 8;
+    public static final int IORING_NOTIF_USAGE_ZC_COPIED = 1 << 31;
+    public static final int IORING_ENTER_GETEVENTS = 1;
+    public static final int IORING_SQ_NEED_WAKEUP = 1;
+    public static final int IORING_SQ_CQ_OVERFLOW = 2;
+    public static final int IORING_SQ_TASKRUN = 4;
+
+    public static final int IORING_CQE_F_BUFFER = 1;
+    public static final int IORING_CQE_F_MORE = 2;
+    public static final int IORING_CQE_F_SOCK_NONEMPTY = 4;
+    public static final int IORING_CQE_F_NOTIF = 8;
+    public static final int IORING_CQE_F_BUF_MORE = 16;
+    public static final int IORING_CQE_BUFFER_SHIFT = 16;
+
+    public static final int IORING_FILE_INDEX_ALLOC = ~0;
+
+    public static final int SPLICE_F_MOVE = 1;
+    public static final int SPLICE_F_NONBLOCK = 2;
+    public static final int SPLICE_F_MORE = 4;
+    public static final int SPLICE_F_FD_IN_FIXED = 1 << 31;
+
+    public static final int IORING_MSG_DATA = 0;
+    public static final int IORING_MSG_SEND_FD = 1;
+    public static final int IORING_MSG_RING_CQE_SKIP = 1;
+    public static final int IORING_MSG_RING_FLAGS_PASS = 2;
+
+    public static final int IOU_PBUF_RING_MMAP = 1;
+    public static final int IOU_PBUF_RING_INC = 2;
+
+    public static final int IORING_OP_NOP = 0;
+    public static final int IORING_OP_READV = 1;
+    public static final int IORING_OP_WRITEV = 2;
+    public static final int IORING_OP_FSYNC = 3;
+    public static final int IORING_OP_READ_FIXED = 4;
+    public static final int IORING_OP_WRITE_FIXED = 5;
+    public static final int IORING_OP_POLL_ADD = 6;
+    public static final int IORING_OP_POLL_REMOVE = 7;
+    public static final int IORING_OP_SYNC_FILE_RANGE = 8;
+    public static final int IORING_OP_SENDMSG = 9;
+    public static final int IORING_OP_RECVMSG = 10;
+    public static final int IORING_OP_TIMEOUT = 11;
+    public static final int IORING_OP_TIMEOUT_REMOVE = 12;
+    public static final int IORING_OP_ACCEPT = 13;
+    public static final int IORING_OP_ASYNC_CANCEL = 14;
+    public static final int IORING_OP_LINK_TIMEOUT = 15;
+    public static final int IORING_OP_CONNECT = 16;
+    public static final int IORING_OP_FALLOCATE = 17;
+    public static final int IORING_OP_OPENAT = 18;
+    public static final int IORING_OP_CLOSE = 19;
+    public static final int IORING_OP_FILES_UPDATE = 20;
+    public static final int IORING_OP_STATX = 21;
+    public static final int IORING_OP_READ = 22;
+    public static final int IORING_OP_WRITE = 23;
+    public static final int IORING_OP_FADVISE = 24;
+    public static final int IORING_OP_MADVISE = 25;
+    public static final int IORING_OP_SEND = 26;
+    public static final int IORING_OP_RECV = 27;
+    public static final int IORING_OP_OPENAT2 = 28;
+    public static final int IORING_OP_EPOLL_CTL = 29;
+    public static final int IORING_OP_SPLICE = 30;
+    public static final int IORING_OP_PROVIDE_BUFFERS = 31;
+    public static final int IORING_OP_REMOVE_BUFFERS = 32;
+    public static final int IORING_OP_TEE = 33;
+    public static final int IORING_OP_SHUTDOWN = 34;
+    public static final int IORING_OP_RENAMEAT = 35;
+    public static final int IORING_OP_UNLINKAT = 36;
+    public static final int IORING_OP_MKDIRAT = 37;
+    public static final int IORING_OP_SYMLINKAT = 38;
+    public static final int IORING_OP_LINKAT = 39;
+    public static final int IORING_OP_MSG_RING = 40;
+    public static final int IORING_OP_SOCKET = 45;
+    public static final int IORING_OP_SEND_ZC = 47;
+    public static final int IORING_OP_SENDMSG_ZC = 48;
 
     public static final int EPERM = 1;
     public static final int ENOENT = 2;
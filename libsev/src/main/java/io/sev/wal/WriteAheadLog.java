@@ -0,0 +1,320 @@
+package io.sev.wal;
+
+import static io.sev.util.unix.Macros.*;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.loop.uring.UringCompletion;
+import io.sev.loop.uring.UringLoop;
+import io.sev.util.iovec.Iovecs;
+
+/*
+ * an append-only log with group commit, on a file opened with O_DIRECT (see OPEN_FLAGS).
+ *
+ * records are copied into block aligned off-heap buffers. every append made while a
+ * commit is in flight, or in the same loop iteration, goes out with the next commit: one
+ * writev of all filled buffers linked to one fdatasync. a record's callback runs once
+ * that fdatasync completed, in log order.
+ *
+ * O_DIRECT only writes whole blocks, so a commit ending in the middle of a block writes
+ * the block padded with zeros, and the next commit writes it again with the records that
+ * followed. only one commit is in flight at a time, so the two never race.
+ *
+ * on disk every record is a header followed by its bytes:
+ *
+ *   u32 length    of the record, without the header
+ *   u32 crc32c    of the record
+ *
+ * a length of 0 is padding, the log ends at the first record whose checksum doesn't match.
+ * a failed write or fdatasync fails its records and every later one, the log has to be
+ * reopened and recovered from disk after that.
+ *
+ * owned by the loop's thread.
+ */
+public final class WriteAheadLog {
+
+    public interface DurableCallback {
+        // result is 0 once the record at lsn is durable, -errno if it never will be
+        public abstract void invoke(Object context, UringLoop loop, long lsn, int result);
+    }
+
+    public static final int OPEN_FLAGS = O_WRONLY | O_CREAT | O_DIRECT | O_CLOEXEC;
+
+    public static final long HEADER_SIZE = 8L;
+
+    private static final class Pending {
+        private final long lsn;
+        private final Object context;
+        private final DurableCallback callback;
+        private Pending(long lsn, Object context, DurableCallback callback) {
+            this.lsn = lsn;
+            this.context = context;
+            this.callback = callback;
+        }
+    }
+
+    private static final class Batch {
+        private final MemorySegment buffer;
+        // file offset of buffer[0], block aligned
+        private long offset;
+        private int fill;
+        private final List<Pending> records = new ArrayList<>();
+        private Batch(MemorySegment buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final UringLoop loop;
+
+    private final int fd;
+
+    private final int blockSize;
+
+    private final int bufferSize;
+
+    private final int maxBatchesPerCommit;
+
+    private final List<Batch> allBatches = new ArrayList<>();
+
+    private final ArrayDeque<Batch> freeBatches = new ArrayDeque<>();
+
+    // filled and waiting for a commit, in log order
+    private final ArrayDeque<Batch> sealed = new ArrayDeque<>();
+
+    private final List<Batch> committing = new ArrayList<>();
+
+    private Batch current;
+
+    private final Iovecs iovecs;
+
+    private final UringCompletion writeCompletion;
+
+    private final UringCompletion syncCompletion;
+
+    private final Consumer<UringLoop> commitTask = l -> {
+        commitScheduled = false;
+        commit();
+    };
+
+    private final CRC32C crc = new CRC32C();
+
+    private boolean commitScheduled = false;
+
+    private long commitLength = 0L;
+
+    private int writeResult = 0;
+
+    private int failure = 0;
+
+    private long commits = 0L;
+
+    /*
+     * fd is opened with OPEN_FLAGS, the log continues at offset, a multiple of blockSize.
+     * bufferSize, a multiple of blockSize, bounds the size of a record, a commit writes at
+     * most maxBatchesPerCommit buffers.
+     */
+    public WriteAheadLog(UringLoop loop, int fd, long offset, int blockSize, int bufferSize, int maxBatchesPerCommit) {
+        if(blockSize <= 0 || bufferSize < 2 * blockSize || bufferSize % blockSize != 0 || offset % blockSize != 0) {
+            throw new IllegalArgumentException("bufferSize and offset must be multiples of blockSize, bufferSize at least two blocks");
+        }
+        this.loop = loop;
+        this.fd = fd;
+        this.blockSize = blockSize;
+        this.bufferSize = bufferSize;
+        this.maxBatchesPerCommit = maxBatchesPerCommit;
+        this.iovecs = new Iovecs(maxBatchesPerCommit, Native.callocator());
+        this.current = takeBatch();
+        this.current.offset = offset;
+        this.writeCompletion = new UringCompletion()
+                .operation(new Operation.Writev().fd(fd))
+                .callback((ctx, l, completion, result) -> {
+                    writeResult = result;
+                    return false;
+                });
+        this.syncCompletion = new UringCompletion()
+                .operation(new Operation.Fsync().fd(fd).datasync(true))
+                .callback((ctx, l, completion, result) -> {
+                    committed(result);
+                    return false;
+                });
+    }
+
+    public WriteAheadLog(UringLoop loop, int fd, long offset) {
+        this(loop, fd, offset, 4096, 256 * 1024, 16);
+    }
+
+    /*
+     * copies record into the log and returns its lsn, the file offset of its header.
+     * callback runs once it is durable. record may be reused as soon as this returns.
+     */
+    public long append(MemorySegment record, Object context, DurableCallback callback) {
+        long size = HEADER_SIZE + record.byteSize();
+        if(size > bufferSize - blockSize) {
+            throw new IllegalArgumentException("record of " + record.byteSize() + " bytes doesn't fit a buffer of " + bufferSize);
+        }
+        if(failure != 0) {
+            callback.invoke(context, loop, -1L, failure);
+            return -1L;
+        }
+        if(current.fill + size > bufferSize) {
+            seal();
+        }
+        long lsn = current.offset + current.fill;
+        crc.reset();
+        crc.update(record.asByteBuffer());
+        current.buffer.set(JAVA_INT, current.fill, (int) record.byteSize());
+        current.buffer.set(JAVA_INT, current.fill + 4L, (int) crc.getValue());
+        MemorySegment.copy(record, 0L, current.buffer, current.fill + HEADER_SIZE, record.byteSize());
+        current.fill += (int) size;
+        current.records.add(new Pending(lsn, context, callback));
+        if(committing.isEmpty() && !commitScheduled) {
+            // run once the current iteration's callbacks are done, so their appends share the commit
+            commitScheduled = true;
+            loop.execute(commitTask);
+        }
+        return lsn;
+    }
+
+    // lsn the next record gets
+    public long end() {
+        return current.offset + current.fill;
+    }
+
+    // records appended and not yet durable
+    public int pending() {
+        int pending = current.records.size();
+        for(Batch batch : sealed) {
+            pending += batch.records.size();
+        }
+        for(Batch batch : committing) {
+            pending += batch.records.size();
+        }
+        return pending;
+    }
+
+    public long commits() {
+        return commits;
+    }
+
+    // frees the buffers, pending records are dropped without their callbacks
+    public void deinit() {
+        Native.free(iovecs.segment());
+        for(Batch batch : allBatches) {
+            Native.free(batch.buffer);
+        }
+        allBatches.clear();
+        freeBatches.clear();
+        sealed.clear();
+        committing.clear();
+    }
+
+    private Batch takeBatch() {
+        Batch batch = freeBatches.poll();
+        if(batch == null) {
+            MemorySegment buffer = Native.alignedCallocSegment(blockSize, bufferSize);
+            if(buffer.equals(MemorySegment.NULL)) {
+                throw new OutOfMemoryError("could not allocate a log buffer");
+            }
+            batch = new Batch(buffer);
+            allBatches.add(batch);
+        }
+        batch.fill = 0;
+        return batch;
+    }
+
+    // closes current, the next batch starts with its last partial block
+    private void seal() {
+        Batch next = takeBatch();
+        int tail = current.fill % blockSize;
+        int tailStart = current.fill - tail;
+        next.offset = current.offset + tailStart;
+        MemorySegment.copy(current.buffer, tailStart, next.buffer, 0L, tail);
+        next.fill = tail;
+        sealed.add(current);
+        current = next;
+    }
+
+    private void commit() {
+        if(!committing.isEmpty() || failure != 0) {
+            return;
+        }
+        if(!current.records.isEmpty()) {
+            seal();
+        }
+        if(sealed.isEmpty()) {
+            return;
+        }
+        while(!sealed.isEmpty() && committing.size() < maxBatchesPerCommit) {
+            committing.add(sealed.poll());
+        }
+        iovecs.clear();
+        for(int i = 0; i < committing.size(); i++) {
+            Batch batch = committing.get(i);
+            int tail = batch.fill % blockSize;
+            long length;
+            if(i == committing.size() - 1) {
+                // padded to a whole block, the padding is rewritten by the next commit
+                length = tail == 0 ? batch.fill : batch.fill - tail + blockSize;
+                batch.buffer.asSlice(batch.fill, length - batch.fill).fill((byte) 0);
+            } else {
+                // the partial block is written by the batch that follows, which starts with it
+                length = batch.fill - tail;
+            }
+            iovecs.add(batch.buffer.address(), length);
+        }
+        commitLength = iovecs.length();
+        writeResult = 0;
+        ((Operation.Writev) writeCompletion.operation).iovecs(iovecs).offset(committing.get(0).offset);
+        loop.enqueueLinked(writeCompletion, syncCompletion);
+    }
+
+    private void committed(int syncResult) {
+        commits++;
+        int result;
+        if(writeResult < 0) {
+            result = writeResult;
+        } else if(writeResult != commitLength) {
+            // the fdatasync was cancelled by the short write
+            result = -EIO;
+        } else {
+            result = syncResult;
+        }
+        if(result != 0) {
+            failure = result;
+        }
+        for(Batch batch : committing) {
+            complete(batch, result);
+        }
+        committing.clear();
+        if(failure != 0) {
+            for(Batch batch : sealed) {
+                complete(batch, failure);
+            }
+            sealed.clear();
+            complete(current, failure);
+            current.fill = 0;
+            return;
+        }
+        // whatever was appended during this commit goes out as the next group
+        commit();
+    }
+
+    private void complete(Batch batch, int result) {
+        for(Pending pending : batch.records) {
+            pending.callback.invoke(pending.context, loop, pending.lsn, result);
+        }
+        batch.records.clear();
+        if(batch != current) {
+            freeBatches.offer(batch);
+        }
+    }
+
+}
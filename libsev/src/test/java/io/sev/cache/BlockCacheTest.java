@@ -0,0 +1,116 @@
+package io.sev.cache;
+
+import static io.sev.util.path.PathUtil.path;
+import static io.sev.util.unix.Macros.*;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.loop.uring.UringCompletion;
+import io.sev.loop.uring.UringLoop;
+import io.sev.util.unix.UnixException;
+
+public class BlockCacheTest {
+
+    private static SegmentAllocator allocator = Native.callocator();
+
+    @Test
+    public void blockCacheTest() throws UnixException, IOException {
+        Path file = Files.createTempFile("sev", "cache");
+        // 8 full blocks of 4096 and a short last one, block i filled with i
+        byte[] content = new byte[8 * 4096 + 100];
+        for(int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i / 4096);
+        }
+        Files.write(file, content);
+
+        UringLoop loop = UringLoop.init();
+        AtomicInteger fd = new AtomicInteger(-1);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.OpenAt().path(path(file, allocator)).flags(O_RDONLY | O_CLOEXEC))
+                        .callback((ctx, l, completion, result) -> {
+                            fd.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+        assertTrue(fd.get() >= 0);
+
+        BlockCache cache = new BlockCache(loop, 4096, 4);
+        List<Integer> results = new ArrayList<>();
+        BlockCache.BlockCallback check = (ctx, l, block, result) -> {
+            long index = (Long) ctx;
+            assertEquals(index == 8 ? 100 : 4096, result);
+            assertEquals(result, block.byteSize());
+            for(long i = 0; i < block.byteSize(); i++) {
+                assertEquals((byte) index, block.get(JAVA_BYTE, i));
+            }
+            results.add(result);
+        };
+
+        // three misses on one block share a single read
+        for(int i = 0; i < 3; i++) {
+            cache.get(fd.get(), 2L, 2L, check);
+        }
+        assertTrue(results.isEmpty());
+        loop.runAll();
+        assertEquals(3, results.size());
+        assertEquals(3, cache.misses());
+        assertEquals(2, cache.coalesced());
+
+        // a hit calls back right away
+        cache.get(fd.get(), 2L, 2L, check);
+        assertEquals(4, results.size());
+        assertEquals(1, cache.hits());
+
+        // more blocks than frames, the short last block included
+        for(long block = 3L; block <= 8L; block++) {
+            cache.get(fd.get(), block, block, check);
+            loop.runAll();
+        }
+        assertEquals(10, results.size());
+        assertEquals(3, cache.evictions());
+        assertEquals(9, cache.misses());
+
+        // the recently read blocks are still there
+        cache.get(fd.get(), 8L, 8L, check);
+        assertEquals(2, cache.hits());
+
+        // nothing is cached for an fd after invalidate
+        cache.invalidate(fd.get());
+        cache.get(fd.get(), 8L, 8L, check);
+        loop.runAll();
+        assertEquals(10, cache.misses());
+        assertEquals(12, results.size());
+
+        // a failed read reaches the callback and is not cached
+        AtomicInteger error = new AtomicInteger(0);
+        cache.get(-1, 0L, null, (ctx, l, block, result) -> error.set(result));
+        loop.runAll();
+        assertEquals(-EBADF, error.get());
+        cache.get(-1, 0L, null, (ctx, l, block, result) -> error.set(result - 1));
+        loop.runAll();
+        assertEquals(-EBADF - 1, error.get());
+
+        cache.deinit();
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Close(fd.get()))
+                        .callback((ctx, l, completion, result) -> false));
+        loop.runAll();
+        loop.deinit();
+        Files.delete(file);
+        System.out.println("BLOCK CACHE TEST");
+    }
+
+}
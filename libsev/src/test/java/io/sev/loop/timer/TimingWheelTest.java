@@ -0,0 +1,81 @@
+package io.sev.loop.timer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void orderTest() {
+        TimingWheel<Object> wheel = new TimingWheel<>(MS, 0L);
+        List<Long> fired = new ArrayList<>();
+        TimerCallback<Object> callback = (ctx, loop, timer) -> fired.add((Long) ctx);
+        long[] delays = {5 * MS, 1 * MS, 70 * MS, 5_000 * MS, 3 * MS, 300_000 * MS};
+        for(long delay : delays) {
+            wheel.schedule(new WheelTimer<>(delay, callback), 0L, delay);
+        }
+        assertEquals(delays.length, wheel.size());
+        assertEquals(1 * MS, wheel.nextDeadline());
+        long now = 0L;
+        while(!wheel.isEmpty()) {
+            now = wheel.nextDeadline();
+            wheel.advance(now, null);
+            // never fired before its deadline
+            for(long delay : fired) {
+                assertTrue(delay <= now);
+            }
+        }
+        assertEquals(List.of(1 * MS, 3 * MS, 5 * MS, 70 * MS, 5_000 * MS, 300_000 * MS), fired);
+        assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+        System.out.println("TIMING WHEEL ORDER TEST");
+    }
+
+    @Test
+    public void cancelTouchTest() {
+        TimingWheel<Object> wheel = new TimingWheel<>(MS, 0L);
+        List<String> fired = new ArrayList<>();
+        TimerCallback<Object> callback = (ctx, loop, timer) -> fired.add((String) ctx);
+        WheelTimer<Object> cancelled = new WheelTimer<>("cancelled", callback);
+        WheelTimer<Object> touched = new WheelTimer<>("touched", callback);
+        wheel.schedule(cancelled, 0L, 10 * MS);
+        wheel.schedule(touched, 0L, 10 * MS);
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        wheel.touch(touched, 8 * MS);
+        wheel.advance(10 * MS, null);
+        assertTrue(fired.isEmpty());
+        assertTrue(touched.isScheduled());
+        wheel.advance(17 * MS, null);
+        assertTrue(fired.isEmpty());
+        wheel.advance(18 * MS, null);
+        assertEquals(List.of("touched"), fired);
+        assertFalse(touched.isScheduled());
+        assertTrue(wheel.isEmpty());
+        System.out.println("TIMING WHEEL CANCEL TOUCH TEST");
+    }
+
+    @Test
+    public void periodicTest() {
+        TimingWheel<Object> wheel = new TimingWheel<>(MS, 0L);
+        int[] count = {0};
+        WheelTimer<Object> periodic = new WheelTimer<>(null, (ctx, loop, timer) -> {
+            if(++count[0] == 5) {
+                assertTrue(wheel.cancel(timer));
+            }
+        });
+        wheel.schedule(periodic, 0L, 2 * MS, 2 * MS);
+        for(long now = 0L; now <= 100 * MS; now += MS) {
+            wheel.advance(now, null);
+        }
+        assertEquals(5, count[0]);
+        assertTrue(wheel.isEmpty());
+        System.out.println("TIMING WHEEL PERIODIC TEST");
+    }
+
+}
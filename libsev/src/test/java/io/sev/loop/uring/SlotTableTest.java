@@ -0,0 +1,49 @@
+package io.sev.loop.uring;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class SlotTableTest {
+
+    @Test
+    public void staleUserDataTest() {
+        SlotTable table = new SlotTable();
+        UringCompletion first = new UringCompletion();
+        long firstUserData = table.register(first);
+        assertNotEquals(0L, firstUserData);
+        assertEquals(firstUserData, first.userData);
+        assertSame(first, table.get(firstUserData));
+        assertSame(first, table.remove(firstUserData));
+        assertNull(table.remove(firstUserData));
+
+        UringCompletion second = new UringCompletion();
+        long secondUserData = table.register(second);
+        assertEquals(SlotTable.slot(firstUserData), SlotTable.slot(secondUserData));
+        assertNotEquals(firstUserData, secondUserData);
+        assertNull(table.get(firstUserData));
+        assertSame(second, table.get(secondUserData));
+        System.out.println("SLOT TABLE STALE TEST");
+    }
+
+    @Test
+    public void growTest() {
+        SlotTable table = new SlotTable();
+        Set<Long> userDatas = new HashSet<>();
+        UringCompletion[] completions = new UringCompletion[5000];
+        for(int i = 0; i < completions.length; i++) {
+            completions[i] = new UringCompletion();
+            assertTrue(userDatas.add(table.register(completions[i])));
+        }
+        assertEquals(5000, table.size());
+        for(UringCompletion completion : completions) {
+            assertSame(completion, table.remove(completion.userData));
+        }
+        assertEquals(0, table.size());
+        System.out.println("SLOT TABLE GROW TEST");
+    }
+
+}
@@ -0,0 +1,109 @@
+package io.sev.loop.uring;
+
+import static io.sev.util.unix.Macros.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.util.inet.InetUtil;
+import io.sev.util.unix.UnixException;
+
+public class UringLoopGroupTest {
+
+    private static final int PORT = 8099;
+
+    private static SegmentAllocator allocator = Native.callocator();
+
+    // echoes everything received on fd until the peer closes it
+    private static void echo(UringLoop loop, int fd) {
+        MemorySegment buf = allocator.allocate(64L);
+        UringCompletion sendCompletion = new UringCompletion();
+        UringCompletion recvCompletion = new UringCompletion();
+        recvCompletion.operation(new Operation.Recv().fd(fd).buf(buf).len(64L))
+                        .callback((ctx, l, completion, result) -> {
+                            if(result <= 0) {
+                                io.sev.socket.Socket.close(fd);
+                                Native.free(buf);
+                                return false;
+                            }
+                            sendCompletion.operation(new Operation.Send().fd(fd).buf(buf).len(result));
+                            l.enqueue(sendCompletion);
+                            return false;
+                        });
+        sendCompletion.callback((ctx, l, completion, result) -> {
+                            l.enqueue(recvCompletion);
+                            return false;
+                        });
+        loop.enqueue(recvCompletion);
+    }
+
+    @Test
+    public void shardedEchoTest() throws UnixException, IOException, InterruptedException {
+        UringLoopGroup group = UringLoopGroup.start(2);
+        MemorySegment addr = InetUtil.sockAddrInet4((Inet4Address) InetAddress.getByName("127.0.0.1"), PORT, allocator);
+        int[] listenFds = group.listen(addr, SOCKADDR_IN_SIZE, 128);
+        assertEquals(2, listenFds.length);
+        AtomicInteger accepted = new AtomicInteger(0);
+        for(int i = 0; i < group.size(); i++) {
+            int listenFd = listenFds[i];
+            group.execute(i, loop -> {
+                loop.enqueue(new UringCompletion()
+                                .operation(new Operation.Accept().fd(listenFd).multishot(true))
+                                .callback((ctx, l, completion, result) -> {
+                                    if(result >= 0) {
+                                        accepted.incrementAndGet();
+                                        echo(l, result);
+                                    }
+                                    return false;
+                                }));
+            });
+        }
+
+        Socket[] clients = new Socket[16];
+        for(int i = 0; i < clients.length; i++) {
+            clients[i] = new Socket("127.0.0.1", PORT);
+        }
+        for(int round = 0; round < 10; round++) {
+            for(Socket client : clients) {
+                OutputStream out = client.getOutputStream();
+                out.write(new byte[] {(byte) round, 1, 2, 3});
+                out.flush();
+            }
+            for(Socket client : clients) {
+                InputStream in = client.getInputStream();
+                byte[] echoed = in.readNBytes(4);
+                assertArrayEquals(new byte[] {(byte) round, 1, 2, 3}, echoed);
+            }
+        }
+        assertEquals(clients.length, accepted.get());
+        for(Socket client : clients) {
+            client.close();
+        }
+
+        CountDownLatch executed = new CountDownLatch(100);
+        for(int i = 0; i < 100; i++) {
+            int index = group.dispatch(loop -> executed.countDown());
+            assertTrue(index >= 0 && index < group.size());
+        }
+        assertTrue(executed.await(5, TimeUnit.SECONDS));
+
+        group.close();
+        assertThrows(IllegalStateException.class, () -> group.execute(0, loop -> {}));
+        System.out.println("LOOP GROUP ECHO TEST");
+    }
+
+}
@@ -1,6 +1,8 @@
 package io.sev.loop.uring;
 
 import static io.sev.socket.Socket.*;
+import static io.sev.util.path.PathUtil.path;
+import static io.sev.util.statx.StatxUtil.statx;
 import static io.sev.util.unix.Macros.*;
 import static java.lang.foreign.ValueLayout.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -10,6 +12,8 @@ import java.lang.foreign.MemorySegment;
 import java.lang.foreign.SegmentAllocator;
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -21,6 +25,13 @@ import org.junit.jupiter.api.Test;
 import io.sev.Native;
 import io.sev.loop.Callback;
 import io.sev.loop.Operation;
+import io.sev.loop.timer.WheelTimer;
+import io.sev.queue.IntrusiveQueue;
+import io.sev.socket.Pipe;
+import io.sev.uring.UringConfig;
+import io.sev.util.iovec.Iovecs;
+import io.sev.util.iovec.Msghdr;
+import io.sev.util.statx.StatxUtil;
 import io.sev.util.inet.InetUtil;
 import io.sev.util.unix.UnixException;
 
@@ -176,5 +187,1251 @@ public class UringLoopTest {
         loop.deinit();
         System.out.println("URING LOOP TEST");
     }
-    
+
+    @Test
+    public void timerCancelTest() throws UnixException {
+        UringLoop loop = UringLoop.init();
+        AtomicInteger timersCanceled = new AtomicInteger(0);
+        AtomicInteger cancelsCompleted = new AtomicInteger(0);
+        for(int i = 0; i < 10; i++) {
+            Callback<UringLoop, UringCompletion> timerCallback = (ctx, l, completion, result) -> {
+                assertEquals(-ECANCELED, result);
+                timersCanceled.incrementAndGet();
+                return false;
+            };
+            long timer = loop.timer(10_000_000_000L, null, timerCallback);
+            Callback<UringLoop, UringCompletion> nopCallback = (ctx, l, completion, result) -> {
+                return false;
+            };
+            UringCompletion nopCompletion = new UringCompletion()
+                                                .operation(new Operation.Nop())
+                                                .callback(nopCallback);
+            loop.enqueue(nopCompletion);
+            loop.runOnce();
+            Callback<UringLoop, UringCompletion> cancelCallback = (ctx, l, completion, result) -> {
+                assertEquals(0, result);
+                cancelsCompleted.incrementAndGet();
+                return false;
+            };
+            loop.cancelTimer(timer, cancelCallback);
+            loop.runAll();
+        }
+        assertEquals(10, timersCanceled.get());
+        assertEquals(10, cancelsCompleted.get());
+
+        // a handle kept after its timer fired doesn't reach the timer that reuses the completion
+        long fired = loop.timer(1_000_000L, null, (ctx, l, completion, result) -> false);
+        loop.runAll();
+        AtomicInteger reused = new AtomicInteger(1);
+        loop.timer(1_000_000L, null, (ctx, l, completion, result) -> {
+            reused.set(result);
+            return false;
+        });
+        AtomicInteger staleCancel = new AtomicInteger(1);
+        loop.cancelTimer(fired, (ctx, l, completion, result) -> {
+            staleCancel.set(result);
+            return false;
+        });
+        assertEquals(-ENOENT, staleCancel.get());
+        loop.runAll();
+        assertEquals(-ETIME, reused.get());
+        loop.deinit();
+        System.out.println("TIMER CANCEL TEST");
+    }
+
+    @Test
+    public void wheelTimerTest() throws UnixException {
+        UringLoop loop = UringLoop.init();
+        AtomicInteger fired = new AtomicInteger(0);
+        WheelTimer<UringLoop> touched = new WheelTimer<>();
+        WheelTimer<UringLoop> unscheduled = new WheelTimer<>(null, (ctx, l, timer) -> {
+            fail("unscheduled timer fired");
+        });
+        long start = loop.now();
+        for(int i = 0; i < 1000; i++) {
+            WheelTimer<UringLoop> timer = new WheelTimer<>(null, (ctx, l, t) -> {
+                assertTrue(l.now() >= t.deadline());
+                fired.incrementAndGet();
+            });
+            loop.schedule(timer, (i % 20 + 1) * 1_000_000L);
+        }
+        loop.schedule(unscheduled, 5_000_000L);
+        loop.schedule(touched.callback((ctx, l, timer) -> {
+            assertTrue(l.now() - start >= 30_000_000L);
+            fired.incrementAndGet();
+        }), 10_000_000L);
+        // keeps touching the timer until the others are done
+        WheelTimer<UringLoop> toucher = new WheelTimer<>(null, (ctx, l, timer) -> l.touch(touched));
+        loop.schedule(toucher, 1_000_000L, 1_000_000L);
+        loop.schedule(new WheelTimer<>(null, (ctx, l, timer) -> l.unschedule(toucher)), 20_000_000L);
+        assertTrue(loop.unschedule(unscheduled));
+        loop.runAll();
+        assertEquals(1001, fired.get());
+        assertTrue(loop.now() - start >= 30_000_000L);
+        loop.deinit();
+        System.out.println("WHEEL TIMER TEST");
+    }
+
+    @Test
+    public void bufferGroupRecvTest() throws UnixException {
+        int serverFd = listener(1);
+        int clientFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        // exactly one message per buffer, incremental rings release it once it is full
+        BufferGroup group = loop.bufferGroup(4, 10);
+        int acceptedFd = accept(loop, serverFd);
+
+        byte[] sendBytes = new byte[] {1,2,3,4,5,6,7,8,9,10};
+        MemorySegment sendSegment = allocator.allocate(10L);
+        sendSegment.copyFrom(MemorySegment.ofArray(sendBytes));
+        AtomicInteger received = new AtomicInteger(0);
+        for(int i = 0; i < 8; i++) {
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Send().fd(clientFd).buf(sendSegment).len(10L))
+                            .callback((ctx, l, completion, result) -> {
+                                assertEquals(10, result);
+                                return false;
+                            }));
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Recv().fd(acceptedFd).bufferGroup(group.id()))
+                            .callback((ctx, l, completion, result) -> {
+                                assertEquals(10, result);
+                                assertTrue(BufferGroup.hasBuffer(completion.cqeFlags()));
+                                MemorySegment buffer = group.buffer(completion, result);
+                                assertArrayEquals(sendBytes, buffer.toArray(JAVA_BYTE));
+                                if(BufferGroup.released(completion.cqeFlags())) {
+                                    group.recycle(completion.bufferId());
+                                }
+                                received.incrementAndGet();
+                                return false;
+                            }));
+            loop.runAll();
+        }
+        // more recvs than buffers, so buffers must have been recycled
+        assertEquals(8, received.get());
+
+        closeStrict(serverFd);
+        closeStrict(clientFd);
+        closeStrict(acceptedFd);
+        loop.deinit();
+        System.out.println("BUFFER GROUP RECV TEST");
+    }
+
+    @Test
+    public void multishotRecvTest() throws UnixException {
+        int serverFd = listener(1);
+        int clientFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        BufferGroup group = loop.bufferGroup(8, 10);
+        AtomicInteger acceptedFd = new AtomicInteger(-1);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Accept().fd(serverFd).multishot(true))
+                        .callback((ctx, l, completion, result) -> {
+                            if(completion.more()) {
+                                assertTrue(result > 0);
+                                acceptedFd.set(result);
+                                l.cancel(completion, (c, l2, cancel, res) -> false);
+                            } else {
+                                assertEquals(-ECANCELED, result);
+                            }
+                            return false;
+                        }));
+        loop.runAll();
+        assertTrue(acceptedFd.get() > 0);
+
+        MemorySegment sendSegment = allocator.allocate(10L);
+        sendSegment.fill((byte) 7);
+        int sends = 20;
+        AtomicInteger cqes = new AtomicInteger(0);
+        AtomicInteger bytesReceived = new AtomicInteger(0);
+        AtomicBoolean terminated = new AtomicBoolean(false);
+        // a single sqe serves every message
+        UringCompletion recvCompletion = new UringCompletion()
+                .operation(new Operation.Recv().fd(acceptedFd.get()).bufferGroup(group.id()).multishot(true))
+                .callback((ctx, l, completion, result) -> {
+                    if(result <= 0) {
+                        assertFalse(completion.more());
+                        if(result == -ENOBUFS) {
+                            // ran out of buffers before we recycled them, re-arm
+                            return true;
+                        }
+                        assertEquals(-ECANCELED, result);
+                        terminated.set(true);
+                        return false;
+                    }
+                    cqes.incrementAndGet();
+                    MemorySegment buffer = group.buffer(completion, result);
+                    // a lookup, asking again for the same cqe gives the same bytes
+                    assertEquals(buffer.address(), group.buffer(completion, result).address());
+                    for(byte b : buffer.toArray(JAVA_BYTE)) {
+                        assertEquals((byte) 7, b);
+                    }
+                    if(BufferGroup.released(completion.cqeFlags())) {
+                        group.recycle(completion.bufferId());
+                    }
+                    boolean done = bytesReceived.addAndGet(result) == sends * 10;
+                    if(!completion.more()) {
+                        terminated.set(done);
+                        return !done;
+                    }
+                    if(done) {
+                        l.cancel(completion, (c, l2, cancel, res) -> false);
+                    }
+                    return false;
+                });
+        loop.enqueue(recvCompletion);
+        for(int i = 0; i < sends; i++) {
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Send().fd(clientFd).buf(sendSegment).len(10L))
+                            .callback((ctx, l, completion, result) -> {
+                                assertEquals(10, result);
+                                return false;
+                            }));
+            loop.runOnce();
+        }
+        loop.runAll();
+        assertEquals(sends * 10, bytesReceived.get());
+        assertTrue(cqes.get() >= sends);
+        assertTrue(terminated.get());
+
+        closeStrict(serverFd);
+        closeStrict(clientFd);
+        closeStrict(acceptedFd.get());
+        loop.deinit();
+        System.out.println("MULTISHOT RECV TEST");
+    }
+
+    @Test
+    public void fixedBuffersTest() throws UnixException {
+        int serverFd = listener(1);
+        int clientFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        int acceptedFd = accept(loop, serverFd);
+
+        MemorySegment writeBuffer = allocator.allocate(4096L);
+        MemorySegment readBuffer = allocator.allocate(4096L);
+        loop.registerBuffers(writeBuffer, readBuffer);
+        for(int i = 0; i < 100; i++) {
+            writeBuffer.set(JAVA_BYTE, 100 + i, (byte) i);
+        }
+        AtomicInteger completed = new AtomicInteger(0);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.WriteFixed()
+                                        .fd(clientFd)
+                                        .buf(writeBuffer.asSlice(100L, 100L))
+                                        .nBytes(100)
+                                        .bufIndex(0))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(100, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.ReadFixed()
+                                        .fd(acceptedFd)
+                                        .buf(readBuffer.asSlice(1000L, 100L))
+                                        .nBytes(100)
+                                        .bufIndex(1))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(100, result);
+                            assertArrayEquals(writeBuffer.asSlice(100L, 100L).toArray(JAVA_BYTE),
+                                                readBuffer.asSlice(1000L, 100L).toArray(JAVA_BYTE));
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.runAll();
+        assertEquals(2, completed.get());
+
+        // sparse table, filled in after registration
+        loop.unregisterBuffers();
+        loop.registerBuffersSparse(4);
+        loop.updateBuffer(3, writeBuffer);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.WriteFixed()
+                                        .fd(clientFd)
+                                        .buf(writeBuffer.asSlice(0L, 10L))
+                                        .nBytes(10)
+                                        .bufIndex(3))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(10, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.WriteFixed()
+                                        .fd(clientFd)
+                                        .buf(writeBuffer.asSlice(0L, 10L))
+                                        .nBytes(10)
+                                        .bufIndex(2))
+                        .callback((ctx, l, completion, result) -> {
+                            // nothing registered at index 2
+                            assertEquals(-EFAULT, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.runAll();
+        assertEquals(4, completed.get());
+
+        // a plain send from a registered buffer, older kernels reject IORING_RECVSEND_FIXED_BUF on it
+        AtomicInteger fixedSend = new AtomicInteger(0);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Send()
+                                        .fd(clientFd)
+                                        .buf(writeBuffer.asSlice(100L, 10L))
+                                        .len(10L)
+                                        .bufIndex(3))
+                        .callback((ctx, l, completion, result) -> {
+                            fixedSend.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+        boolean sendFixedSupported = fixedSend.get() != -EINVAL;
+        if(sendFixedSupported) {
+            assertEquals(10, fixedSend.get());
+        } else {
+            System.out.println("SEND WITH A FIXED BUFFER NOT SUPPORTED");
+        }
+        // the bytes of the WriteFixed at index 3 come first
+        MemorySegment received = allocator.allocate(sendFixedSupported ? 20L : 10L);
+        readAll(loop, acceptedFd, received, () -> {});
+        loop.runAll();
+        assertEquals(-1L, received.asSlice(0L, 10L).mismatch(writeBuffer.asSlice(0L, 10L)));
+        if(sendFixedSupported) {
+            assertEquals(-1L, received.asSlice(10L).mismatch(writeBuffer.asSlice(100L, 10L)));
+        }
+
+        closeStrict(serverFd);
+        closeStrict(clientFd);
+        closeStrict(acceptedFd);
+        loop.deinit();
+        System.out.println("FIXED BUFFERS TEST");
+    }
+
+    @Test
+    public void fixedFilesTest() throws UnixException {
+        int serverFd = listener(1);
+        int clientFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        loop.registerFilesSparse(16);
+        // the listening socket lives in slot 15, direct descriptors are allocated below it
+        loop.updateFiles(15, serverFd);
+        loop.fileAllocRange(0, 15);
+        AtomicInteger acceptedSlot = new AtomicInteger(-1);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Accept().fd(15).fixed(true).direct(true))
+                        .callback((ctx, l, completion, result) -> {
+                            assertTrue(result >= 0 && result < 15);
+                            acceptedSlot.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+
+        MemorySegment sendSegment = allocator.allocate(10L);
+        sendSegment.fill((byte) 3);
+        MemorySegment recvSegment = allocator.allocate(10L);
+        AtomicInteger completed = new AtomicInteger(0);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Send().fd(clientFd).buf(sendSegment).len(10L))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(10, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Recv().fd(acceptedSlot.get()).fixed(true).buf(recvSegment).len(10L))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(10, result);
+                            assertArrayEquals(sendSegment.toArray(JAVA_BYTE), recvSegment.toArray(JAVA_BYTE));
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.runAll();
+        assertEquals(2, completed.get());
+
+        MemorySegment path = allocator.allocateFrom("/dev/null");
+        AtomicInteger openedSlot = new AtomicInteger(-1);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.OpenAt().path(path).flags(O_RDONLY | O_CLOEXEC).direct(true))
+                        .callback((ctx, l, completion, result) -> {
+                            assertTrue(result >= 0 && result < 15);
+                            assertNotEquals(acceptedSlot.get(), result);
+                            openedSlot.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Read().fd(openedSlot.get()).fixed(true).buf(recvSegment).nBytes(10))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(0, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.runAll();
+
+        for(int slot : new int[] {acceptedSlot.get(), openedSlot.get()}) {
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Close().fd(slot).fixed(true))
+                            .callback((ctx, l, completion, result) -> {
+                                assertEquals(0, result);
+                                completed.incrementAndGet();
+                                return false;
+                            }));
+        }
+        loop.runAll();
+        assertEquals(5, completed.get());
+
+        closeStrict(serverFd);
+        closeStrict(clientFd);
+        loop.deinit();
+        System.out.println("FIXED FILES TEST");
+    }
+
+    @Test
+    public void ringConfigTest() throws UnixException {
+        UringConfig[] configs = new UringConfig[] {
+            new UringConfig().entries(64).cqEntries(1024),
+            new UringConfig().coopTaskrun(true).taskrunFlag(true),
+            new UringConfig().singleIssuer(true).deferTaskrun(true),
+            new UringConfig().sqPoll(true).sqThreadIdleMs(50).sqThreadCpu(0)
+        };
+        for(UringConfig config : configs) {
+            UringLoop loop = UringLoop.init(config);
+            // whatever the kernel kept is a subset of what was asked for
+            assertEquals(0, loop.ringFlags() & ~config.setupFlags());
+            if(config.cqEntries > 0) {
+                assertTrue((loop.ringFlags() & IORING_SETUP_CQSIZE) != 0);
+            }
+            AtomicLong nopsFinished = new AtomicLong(0L);
+            Callback<UringLoop, UringCompletion> nopCallback = (context, uringLoop, completion, result) -> {
+                assertEquals(0, result);
+                return nopsFinished.incrementAndGet() < 1000L;
+            };
+            for(int i = 0; i < 10; i++) {
+                loop.enqueue(new UringCompletion()
+                                .operation(new Operation.Nop())
+                                .callback(nopCallback));
+            }
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            loop.timer(1_000_000L, null, (ctx, l, completion, result) -> {
+                assertEquals(-ETIME, result);
+                timedOut.set(true);
+                return false;
+            });
+            loop.runAll();
+            assertTrue(nopsFinished.get() >= 1000L);
+            assertTrue(timedOut.get());
+            loop.deinit();
+        }
+        // modes the kernel never combines are rejected up front instead of silently dropped
+        assertThrows(IllegalArgumentException.class, () -> UringLoop.init(new UringConfig().sqPoll(true).deferTaskrun(true)));
+        assertThrows(IllegalArgumentException.class, () -> UringLoop.init(new UringConfig().sqPoll(true).coopTaskrun(true)));
+        assertThrows(IllegalArgumentException.class, () -> UringLoop.init(new UringConfig().taskrunFlag(true)));
+        // an entries error is not taken for an unsupported mode, the errno is the kernel's
+        UnixException ex = assertThrows(UnixException.class, () -> UringLoop.init(new UringConfig().entries(0).singleIssuer(true)));
+        assertEquals(EINVAL, ex.errno());
+        System.out.println("RING CONFIG TEST");
+    }
+
+    @Test
+    public void crossThreadTest() throws Exception {
+        UringLoop loop = UringLoop.init();
+        Thread loopThread = Thread.currentThread();
+        int producers = 4;
+        int perProducer = 10_000;
+        AtomicLong tasksRun = new AtomicLong(0L);
+        AtomicLong nopsFinished = new AtomicLong(0L);
+        AtomicBoolean wrongThread = new AtomicBoolean(false);
+        Callback<UringLoop, UringCompletion> nopCallback = (context, uringLoop, completion, result) -> {
+            if(Thread.currentThread() != loopThread) {
+                wrongThread.set(true);
+            }
+            assertEquals(0, result);
+            nopsFinished.incrementAndGet();
+            return false;
+        };
+        Thread[] threads = new Thread[producers];
+        for(int i = 0; i < producers; i++) {
+            threads[i] = new Thread(() -> {
+                for(int j = 0; j < perProducer; j++) {
+                    loop.enqueueAsync(new UringCompletion()
+                                        .operation(new Operation.Nop())
+                                        .callback(nopCallback));
+                    loop.execute(l -> {
+                        if(Thread.currentThread() != loopThread) {
+                            wrongThread.set(true);
+                        }
+                        tasksRun.incrementAndGet();
+                    });
+                    if(j % 1000 == 0) {
+                        // let the loop park so the eventfd wakeup is exercised
+                        try {
+                            Thread.sleep(1L);
+                        } catch(InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+        }
+        // a stopper waits for everything to be run, then stops the loop from outside
+        Thread stopper = new Thread(() -> {
+            long expected = (long) producers * perProducer;
+            while(tasksRun.get() < expected || nopsFinished.get() < expected) {
+                Thread.onSpinWait();
+            }
+            loop.stop();
+        });
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        stopper.start();
+        loop.runUntilStopped();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        stopper.join();
+        assertFalse(wrongThread.get());
+        assertEquals((long) producers * perProducer, tasksRun.get());
+        assertEquals((long) producers * perProducer, nopsFinished.get());
+        loop.deinit();
+        System.out.println("CROSS THREAD TEST");
+    }
+
+    @Test
+    public void stopTest() throws Exception {
+        UringLoop loop = UringLoop.init();
+        AtomicInteger result = new AtomicInteger(1);
+        AtomicBoolean taskRun = new AtomicBoolean(false);
+        // handed over right before stop(), the loop doesn't get to submit it
+        Thread other = new Thread(() -> {
+            loop.execute(l -> taskRun.set(true));
+            loop.enqueueAsync(new UringCompletion()
+                                .operation(new Operation.Nop())
+                                .callback((ctx, l, completion, res) -> {
+                                    result.set(res);
+                                    return true;
+                                }));
+            loop.stop();
+        });
+        other.start();
+        other.join();
+        loop.runUntilStopped();
+        assertTrue(taskRun.get());
+        assertEquals(-ECANCELED, result.get());
+        assertEquals(0L, loop.active());
+        loop.deinit();
+        System.out.println("STOP TEST");
+    }
+
+    @Test
+    public void messageTest() throws Exception {
+        UringLoop target = UringLoop.init();
+        UringLoop sender = UringLoop.init();
+        int efd = Native.eventfd(0, EFD_CLOEXEC);
+        sender.registerFiles(efd);
+        target.registerFilesSparse(4);
+
+        AtomicLong payloadSum = new AtomicLong(0L);
+        AtomicLong valueSum = new AtomicLong(0L);
+        AtomicLong fileTag = new AtomicLong(-1L);
+        AtomicInteger written = new AtomicInteger(0);
+        target.onMessage(null, (ctx, loop, payload, value) -> {
+            payloadSum.addAndGet(payload);
+            valueSum.addAndGet(value);
+        });
+        MemorySegment one = allocator.allocate(JAVA_LONG);
+        one.set(JAVA_LONG, 0L, 1L);
+        target.onFile(null, (ctx, loop, tag, slot) -> {
+            assertTrue(slot >= 0);
+            fileTag.set(tag);
+            // the eventfd is usable from the target's own file table
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Write().fd(slot).fixed(true).buf(one).nBytes(8))
+                            .callback((c, l, completion, result) -> {
+                                written.set(result);
+                                l.stop();
+                                return false;
+                            }));
+        });
+        Thread targetThread = new Thread(target::runUntilStopped);
+        targetThread.start();
+
+        AtomicInteger sent = new AtomicInteger(0);
+        Callback<UringLoop, UringCompletion> sentCallback = (ctx, l, completion, result) -> {
+            assertEquals(0, result);
+            sent.incrementAndGet();
+            return false;
+        };
+        // the largest payload sets all 61 bits, it must not be taken for an internal completion or a file
+        for(long payload : new long[] {1L, 0L, (1L << 61) - 1L, 1L << 60}) {
+            sender.message(target, payload, 2, null, sentCallback);
+        }
+        sender.runAll();
+        sender.sendFile(target, 0, IORING_FILE_INDEX_ALLOC, 12345L, null, sentCallback);
+        sender.runAll();
+        targetThread.join();
+
+        assertEquals(5, sent.get());
+        assertEquals((1L << 61) + (1L << 60), payloadSum.get());
+        assertEquals(8L, valueSum.get());
+        assertEquals(12345L, fileTag.get());
+        assertEquals(8, written.get());
+
+        sender.deinit();
+        target.deinit();
+        closeStrict(efd);
+        System.out.println("MESSAGE TEST");
+    }
+
+    @Test
+    public void linkedChainTest() throws UnixException {
+        UringLoop loop = UringLoop.init(new UringConfig().entries(4));
+        StringBuilder order = new StringBuilder();
+        Callback<UringLoop, UringCompletion> recorder = (ctx, l, completion, result) -> {
+            order.append(ctx).append(result == 0 ? "" : "!").append(' ');
+            if(result != 0) {
+                assertEquals(-ECANCELED, result);
+            }
+            return false;
+        };
+        Callback<UringLoop, UringCompletion> badClose = (ctx, l, completion, result) -> {
+            assertEquals(-EBADF, result);
+            order.append(ctx).append("! ");
+            return false;
+        };
+
+        // 2 sqes taken, the chain of 3 doesn't fit and has to wait for the next submit as a whole
+        loop.enqueue(new UringCompletion().operation(new Operation.Nop()).context("a").callback(recorder));
+        loop.enqueue(new UringCompletion().operation(new Operation.Nop()).context("b").callback(recorder));
+        loop.enqueueLinked(
+            new UringCompletion().operation(new Operation.Nop()).context("c").callback(recorder),
+            new UringCompletion().operation(new Operation.Nop()).context("d").callback(recorder),
+            new UringCompletion().operation(new Operation.Nop()).context("e").callback(recorder));
+        loop.runAll();
+        assertEquals("a b c d e ", order.toString());
+
+        // a failed link cancels the rest of the chain
+        order.setLength(0);
+        loop.enqueueLinked(
+            new UringCompletion().operation(new Operation.Close(-1)).context("f").callback(badClose),
+            new UringCompletion().operation(new Operation.Nop()).context("g").callback(recorder),
+            new UringCompletion().operation(new Operation.Nop()).context("h").callback(recorder));
+        loop.runAll();
+        assertEquals("f! g! h! ", order.toString());
+
+        // a hard link doesn't
+        order.setLength(0);
+        loop.enqueueLinked(
+            new UringCompletion().operation(new Operation.Close(-1)).context("i").callback(badClose).hardLink(true),
+            new UringCompletion().operation(new Operation.Nop()).context("j").callback(recorder));
+        loop.runAll();
+        assertEquals("i! j ", order.toString());
+
+        assertThrows(IllegalArgumentException.class, () -> loop.enqueueLinked(
+            new UringCompletion(), new UringCompletion(), new UringCompletion(),
+            new UringCompletion(), new UringCompletion()));
+
+        loop.deinit();
+        System.out.println("LINKED CHAIN TEST");
+    }
+
+    @Test
+    public void deadlineTest() throws UnixException {
+        UringLoop loop = UringLoop.init();
+        int efd = Native.eventfd(0, EFD_CLOEXEC);
+        MemorySegment buf = allocator.allocate(JAVA_LONG);
+        AtomicInteger readResult = new AtomicInteger(0);
+        AtomicInteger nopResult = new AtomicInteger(1);
+
+        // nothing to read, the read is cancelled by its deadline and takes the linked nop with it
+        long start = System.nanoTime();
+        loop.enqueueLinked(
+            new UringCompletion()
+                .operation(new Operation.Read().deadline(20_000_000L).fd(efd).buf(buf).nBytes(8))
+                .callback((ctx, l, completion, result) -> {
+                    readResult.set(result);
+                    return false;
+                }),
+            new UringCompletion()
+                .operation(new Operation.Nop())
+                .callback((ctx, l, completion, result) -> {
+                    nopResult.set(result);
+                    return false;
+                }));
+        loop.runAll();
+        assertTrue(System.nanoTime() - start >= 20_000_000L);
+        assertEquals(-ECANCELED, readResult.get());
+        assertEquals(-ECANCELED, nopResult.get());
+
+        // the counter is set, the read completes well before its deadline
+        Native.eventfdWrite(efd, 3L);
+        start = System.nanoTime();
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Read().fd(efd).buf(buf).nBytes(8).deadline(5_000_000_000L))
+                        .callback((ctx, l, completion, result) -> {
+                            readResult.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertEquals(8, readResult.get());
+        assertEquals(3L, buf.get(JAVA_LONG, 0L));
+
+        loop.deinit();
+        closeStrict(efd);
+        System.out.println("DEADLINE TEST");
+    }
+
+    @Test
+    public void vectoredIoTest() throws UnixException {
+        int serverFd = listener(1);
+        int clientFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        int acceptedFd = accept(loop, serverFd);
+
+        // header and payload from separate buffers in one writev, scattered again by readv
+        MemorySegment header = allocator.allocate(8L);
+        header.set(JAVA_LONG, 0L, 100L);
+        MemorySegment payload = allocator.allocate(100L);
+        payload.fill((byte) 3);
+        Iovecs writeIovecs = new Iovecs(2, allocator);
+        writeIovecs.add(header).add(payload);
+        assertEquals(108L, writeIovecs.length());
+        MemorySegment readHeader = allocator.allocate(8L);
+        MemorySegment readPayload = allocator.allocate(100L);
+        Iovecs readIovecs = new Iovecs(2, allocator);
+        readIovecs.add(readHeader).add(readPayload);
+        AtomicInteger completed = new AtomicInteger(0);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Writev().fd(clientFd).iovecs(writeIovecs))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(108, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Readv().fd(acceptedFd).iovecs(readIovecs))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(108, result);
+                            completed.incrementAndGet();
+                            return false;
+                        }));
+        loop.runAll();
+        assertEquals(2, completed.get());
+        assertEquals(100L, readHeader.get(JAVA_LONG, 0L));
+        assertEquals(-1L, readPayload.mismatch(payload));
+
+        // datagrams with sendmsg, received by one multishot recvmsg into provided buffers
+        int receiverFd = socket(AF_INET, SOCK_DGRAM | SOCK_CLOEXEC, 0);
+        bind(receiverFd, localhost, SOCKADDR_IN_SIZE);
+        int senderFd = socket(AF_INET, SOCK_DGRAM | SOCK_CLOEXEC, 0);
+        // room for the recvmsg header, the source address and an 8 byte datagram
+        BufferGroup group = loop.bufferGroup(8, (int) (Msghdr.RECVMSG_OUT_SIZE + SOCKADDR_IN_SIZE + 8L));
+        Msghdr recvMsghdr = new Msghdr(allocator).lengths(SOCKADDR_IN_SIZE, 0L);
+        AtomicLong received = new AtomicLong(0L);
+        UringCompletion recvMsgCompletion = new UringCompletion()
+                .operation(new Operation.RecvMsg().fd(receiverFd).msg(recvMsghdr).bufferGroup(group.id()).multishot(true))
+                .callback((ctx, l, completion, result) -> {
+                    if(!completion.more()) {
+                        assertEquals(-ECANCELED, result);
+                        return false;
+                    }
+                    MemorySegment buffer = group.buffer(completion, result);
+                    assertEquals(8, Msghdr.payloadLen(buffer));
+                    assertEquals(AF_INET, recvMsghdr.name(buffer).get(JAVA_SHORT, 0L));
+                    received.addAndGet(recvMsghdr.payload(buffer, result).get(JAVA_LONG, 0L));
+                    if(BufferGroup.released(completion.cqeFlags())) {
+                        group.recycle(completion.bufferId());
+                    }
+                    if(received.get() == 6L) {
+                        l.cancel(completion, (c, l2, cancel, res) -> false);
+                    }
+                    return false;
+                });
+        loop.enqueue(recvMsgCompletion);
+        Msghdr sendMsghdr = new Msghdr(allocator);
+        MemorySegment datagram = allocator.allocate(8L);
+        Iovecs sendIovecs = new Iovecs(1, allocator).add(datagram);
+        for(long i = 1L; i <= 3L; i++) {
+            long value = i;
+            datagram.set(JAVA_LONG, 0L, value);
+            sendMsghdr.clear()
+                      .name(localhost, SOCKADDR_IN_SIZE)
+                      .iov(sendIovecs);
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.SendMsg().fd(senderFd).msg(sendMsghdr))
+                            .callback((ctx, l, completion, result) -> {
+                                assertEquals(8, result);
+                                return false;
+                            }));
+            // the datagram and the msghdr are reused, wait for the send
+            loop.runOnce();
+        }
+        loop.runAll();
+        assertEquals(6L, received.get());
+
+        closeStrict(senderFd);
+        closeStrict(receiverFd);
+        closeStrict(serverFd);
+        closeStrict(clientFd);
+        closeStrict(acceptedFd);
+        loop.deinit();
+        System.out.println("VECTORED IO TEST");
+    }
+
+    @Test
+    public void zeroCopySendTest() throws UnixException {
+        int serverFd = listener(1);
+        int clientFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        int acceptedFd = accept(loop, serverFd);
+
+        int size = 64 * 1024;
+        MemorySegment sendBuffer = allocator.allocate(size);
+        for(int i = 0; i < size; i++) {
+            sendBuffer.set(JAVA_BYTE, i, (byte) i);
+        }
+        MemorySegment recvBuffer = allocator.allocate(size);
+        AtomicInteger sent = new AtomicInteger(-1);
+        AtomicBoolean notified = new AtomicBoolean(false);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.SendZc().fd(clientFd).buf(sendBuffer).len(size).zcFlags(IORING_SEND_ZC_REPORT_USAGE))
+                        .callback((ctx, l, completion, result) -> {
+                            if(completion.notification()) {
+                                // the buffer is ours again, the result cqe came first
+                                assertFalse(completion.more());
+                                assertEquals(size, sent.get());
+                                notified.set(true);
+                            } else {
+                                assertTrue(completion.more());
+                                assertFalse(notified.get());
+                                sent.set(result);
+                            }
+                            return false;
+                        }));
+        AtomicInteger received = new AtomicInteger(0);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Recv().fd(acceptedFd).buf(recvBuffer).len(size))
+                        .callback((ctx, l, completion, result) -> {
+                            assertTrue(result > 0);
+                            int total = received.addAndGet(result);
+                            Operation.Recv recv = (Operation.Recv) completion.operation;
+                            recv.buf(recvBuffer.asSlice(total)).len(size - total);
+                            return total < size;
+                        }));
+        loop.runAll();
+        assertEquals(size, sent.get());
+        assertTrue(notified.get());
+        assertEquals(-1L, recvBuffer.mismatch(sendBuffer));
+
+        closeStrict(serverFd);
+        closeStrict(clientFd);
+        closeStrict(acceptedFd);
+        loop.deinit();
+        System.out.println("ZERO COPY SEND TEST");
+    }
+
+    @Test
+    public void spliceProxyTest() throws UnixException {
+        int serverFd = listener(2);
+        int clientFd = connectClient();
+        int upstreamFd = connectClient();
+
+        UringLoop loop = UringLoop.init();
+        int[] accepted = new int[] {accept(loop, serverFd), accept(loop, serverFd)};
+
+        // client <-> accepted[0] <-proxy-> accepted[1] <-> upstream
+        AtomicInteger proxyResult = new AtomicInteger(1);
+        SpliceProxy proxy = SpliceProxy.start(loop, accepted[0], accepted[1], 16 * 1024, null,
+                (ctx, l, p, result) -> proxyResult.set(result));
+
+        int size = 256 * 1024;
+        MemorySegment request = allocator.allocate(size);
+        MemorySegment response = allocator.allocate(size);
+        for(int i = 0; i < size; i++) {
+            request.set(JAVA_BYTE, i, (byte) i);
+            response.set(JAVA_BYTE, i, (byte) (i * 7));
+        }
+        MemorySegment upstreamBuffer = allocator.allocate(size);
+        MemorySegment clientBuffer = allocator.allocate(size);
+        writeAll(loop, clientFd, request, () -> {});
+        readAll(loop, upstreamFd, upstreamBuffer, () -> writeAll(loop, upstreamFd, response, () -> shutdownWrite(loop, upstreamFd)));
+        readAll(loop, clientFd, clientBuffer, () -> shutdownWrite(loop, clientFd));
+        loop.runAll();
+
+        assertEquals(0, proxyResult.get());
+        assertEquals(size, proxy.bytesAToB());
+        assertEquals(size, proxy.bytesBToA());
+        assertEquals(-1L, upstreamBuffer.mismatch(request));
+        assertEquals(-1L, clientBuffer.mismatch(response));
+
+        // tee copies out of a pipe without consuming, splice then moves the original into the other pipe
+        Pipe source = Pipe.open(O_CLOEXEC);
+        Pipe copy = Pipe.open(O_CLOEXEC);
+        MemorySegment hello = allocator.allocate(5L);
+        hello.copyFrom(MemorySegment.ofArray("hello".getBytes()));
+        MemorySegment teeRead = allocator.allocate(5L);
+        MemorySegment spliceRead = allocator.allocate(5L);
+        AtomicInteger completed = new AtomicInteger(0);
+        Callback<UringLoop, UringCompletion> fiveBytes = (ctx, l, completion, result) -> {
+            assertEquals(5, result);
+            completed.incrementAndGet();
+            return false;
+        };
+        loop.enqueueLinked(
+            new UringCompletion().operation(new Operation.Write().fd(source.writeFd).buf(hello).nBytes(5)).callback(fiveBytes),
+            new UringCompletion().operation(new Operation.Tee(source.readFd, copy.writeFd, 5, 0)).callback(fiveBytes),
+            new UringCompletion().operation(new Operation.Read().fd(copy.readFd).buf(teeRead).nBytes(5)).callback(fiveBytes),
+            new UringCompletion().operation(new Operation.Splice(source.readFd, copy.writeFd, 5, 0)).callback(fiveBytes),
+            new UringCompletion().operation(new Operation.Read().fd(copy.readFd).buf(spliceRead).nBytes(5)).callback(fiveBytes));
+        loop.runAll();
+        assertEquals(5, completed.get());
+        assertEquals(-1L, teeRead.mismatch(hello));
+        assertEquals(-1L, spliceRead.mismatch(hello));
+        source.close();
+        copy.close();
+
+        for(int fd : new int[] {serverFd, clientFd, upstreamFd, accepted[0], accepted[1]}) {
+            closeStrict(fd);
+        }
+        loop.deinit();
+        System.out.println("SPLICE PROXY TEST");
+    }
+
+    private static void writeAll(UringLoop loop, int fd, MemorySegment buf, Runnable then) {
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Send().fd(fd).buf(buf).len(buf.byteSize()))
+                        .callback((ctx, l, completion, result) -> {
+                            assertTrue(result > 0);
+                            Operation.Send send = (Operation.Send) completion.operation;
+                            send.buf(send.buf.asSlice(result)).len(send.len - result);
+                            if(send.len == 0L) {
+                                then.run();
+                                return false;
+                            }
+                            return true;
+                        }));
+    }
+
+    private static void readAll(UringLoop loop, int fd, MemorySegment buf, Runnable then) {
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Recv().fd(fd).buf(buf).len(buf.byteSize()))
+                        .callback((ctx, l, completion, result) -> {
+                            assertTrue(result > 0);
+                            Operation.Recv recv = (Operation.Recv) completion.operation;
+                            recv.buf(recv.buf.asSlice(result)).len(recv.len - result);
+                            if(recv.len == 0L) {
+                                then.run();
+                                return false;
+                            }
+                            return true;
+                        }));
+    }
+
+    private static void shutdownWrite(UringLoop loop, int fd) {
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Shutdown(fd, SHUT_WR))
+                        .callback((ctx, l, completion, result) -> {
+                            assertEquals(0, result);
+                            return false;
+                        }));
+    }
+
+    @Test
+    public void fileOpsTest() throws UnixException, IOException {
+        Path dir = Files.createTempDirectory("sev");
+        MemorySegment subPath = path(dir.resolve("sub"), allocator);
+        MemorySegment filePath = path(dir.resolve("sub/file"), allocator);
+        MemorySegment renamedPath = path(dir.resolve("sub/renamed"), allocator);
+        MemorySegment statxbuf = statx(allocator);
+        UringLoop loop = UringLoop.init();
+
+        assertEquals(0, runSingle(loop, new Operation.MkdirAt().path(subPath).mode(0700)));
+        int fd = runSingle(loop, new Operation.OpenAt().path(filePath).flags(O_CREAT | O_RDWR | O_CLOEXEC).mode(0600));
+        assertTrue(fd >= 0);
+
+        MemorySegment data = allocator.allocate(4096L);
+        data.fill((byte) 9);
+        assertEquals(4096, runSingle(loop, new Operation.Write().fd(fd).buf(data).nBytes(4096).offset(0L)));
+        assertEquals(0, runSingle(loop, new Operation.Fallocate().fd(fd).mode(FALLOC_FL_KEEP_SIZE).offset(4096L).len(1 << 20)));
+        assertEquals(0, runSingle(loop, new Operation.Fsync().fd(fd).range(0L, 4096).rangeOnly(true)));
+        assertEquals(0, runSingle(loop, new Operation.Fsync().fd(fd).datasync(true)));
+        assertEquals(0, runSingle(loop, new Operation.Fsync().fd(fd)));
+
+        assertEquals(0, runSingle(loop, new Operation.Statx().path(filePath).mask(STATX_SIZE | STATX_MODE).statxbuf(statxbuf)));
+        assertTrue((StatxUtil.mask(statxbuf) & STATX_SIZE) != 0);
+        // the preallocated space is kept out of the size
+        assertEquals(4096L, StatxUtil.size(statxbuf));
+        assertTrue(StatxUtil.isRegularFile(statxbuf));
+        assertEquals(0600, StatxUtil.mode(statxbuf) & 0777);
+        // the open fd itself, through AT_EMPTY_PATH
+        assertEquals(0, runSingle(loop, new Operation.Statx().dirFd(fd).path(path("", allocator)).flags(AT_EMPTY_PATH).statxbuf(statxbuf)));
+        assertEquals(4096L, StatxUtil.size(statxbuf));
+        assertEquals(0, runSingle(loop, new Operation.Close(fd)));
+
+        assertEquals(0, runSingle(loop, new Operation.RenameAt().oldPath(filePath).newPath(renamedPath)));
+        assertEquals(-ENOENT, runSingle(loop, new Operation.Statx().path(filePath).statxbuf(statxbuf)));
+        assertEquals(0, runSingle(loop, new Operation.UnlinkAt().path(renamedPath)));
+        assertEquals(0, runSingle(loop, new Operation.UnlinkAt().path(subPath).flags(AT_REMOVEDIR)));
+        assertFalse(Files.exists(dir.resolve("sub")));
+
+        loop.deinit();
+        Files.delete(dir);
+        System.out.println("FILE OPS TEST");
+    }
+
+    @Test
+    public void fileScannerTest() throws UnixException, IOException {
+        Path file = Files.createTempFile("sev", "scan");
+        byte[] content = new byte[1024 * 1024 + 123];
+        for(int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + i / 4096);
+        }
+        Files.write(file, content);
+        UringLoop loop = UringLoop.init();
+        int fd = runSingle(loop, new Operation.OpenAt().path(path(file, allocator)).flags(O_RDONLY | O_CLOEXEC));
+        assertTrue(fd >= 0);
+
+        // whole file, every chunk is held until the next one arrives
+        byte[] scanned = new byte[content.length];
+        AtomicLong expected = new AtomicLong(0L);
+        AtomicInteger end = new AtomicInteger(1);
+        MemorySegment[] held = new MemorySegment[1];
+        new FileScanner(loop, fd, 64 * 1024, 4).start(null, (ctx, l, scanner, offset, chunk, result) -> {
+            if(result <= 0) {
+                assertEquals(MemorySegment.NULL, chunk);
+                assertEquals(content.length, offset);
+                end.set(result);
+                scanner.close();
+                return;
+            }
+            assertEquals(expected.get(), offset);
+            expected.addAndGet(result);
+            MemorySegment.copy(chunk, JAVA_BYTE, 0L, scanned, (int) offset, result);
+            if(held[0] != null) {
+                scanner.release(held[0]);
+            }
+            held[0] = chunk;
+        });
+        loop.runAll();
+        assertEquals(0, end.get());
+        assertArrayEquals(content, scanned);
+
+        // a range ending mid chunk, through a registered buffer
+        loop.registerBuffersSparse(1);
+        long start = 3 * 4096L;
+        int length = 200 * 1000;
+        byte[] range = new byte[length];
+        end.set(1);
+        FileScanner scanner = new FileScanner(loop, fd, 16 * 1024, 8).range(start, length).fixedBuffer(0);
+        scanner.start(null, (ctx, l, s, offset, chunk, result) -> {
+            if(result <= 0) {
+                end.set(result);
+                return;
+            }
+            MemorySegment.copy(chunk, JAVA_BYTE, 0L, range, (int) (offset - start), result);
+            s.release(chunk);
+        });
+        loop.runAll();
+        assertEquals(0, end.get());
+        assertEquals(length, scanner.bytes());
+        assertArrayEquals(Arrays.copyOfRange(content, (int) start, (int) start + length), range);
+        scanner.close();
+        loop.unregisterBuffers();
+
+        // stopped from the first chunk, what is in flight completes before the last callback
+        AtomicInteger chunks = new AtomicInteger(0);
+        end.set(1);
+        new FileScanner(loop, fd, 4096, 16).start(null, (ctx, l, s, offset, chunk, result) -> {
+            if(result <= 0) {
+                end.set(result);
+                s.close();
+                return;
+            }
+            chunks.incrementAndGet();
+            s.stop();
+        });
+        loop.runAll();
+        assertEquals(1, chunks.get());
+        assertEquals(-ECANCELED, end.get());
+
+        assertEquals(0, runSingle(loop, new Operation.Close(fd)));
+        loop.deinit();
+        Files.delete(file);
+        System.out.println("FILE SCANNER TEST");
+    }
+
+    @Test
+    public void batchedEnqueueTest() throws UnixException {
+        UringLoop loop = UringLoop.init(new UringConfig().entries(16).cqEntries(64).submitBatch(4));
+        AtomicInteger completed = new AtomicInteger(0);
+        Callback<UringLoop, UringCompletion> count = (ctx, l, completion, result) -> {
+            assertEquals(0, result);
+            completed.incrementAndGet();
+            return false;
+        };
+
+        // the submit batch is reached on the fourth sqe
+        for(int i = 0; i < 3; i++) {
+            loop.enqueue(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        }
+        assertEquals(3, loop.unsubmitted());
+        loop.enqueue(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        assertEquals(0, loop.unsubmitted());
+
+        // enqueueAll submits right away, whatever the batch
+        UringCompletion[] burst = new UringCompletion[2];
+        for(int i = 0; i < burst.length; i++) {
+            burst[i] = new UringCompletion().operation(new Operation.Nop()).callback(count);
+        }
+        loop.enqueueAll(burst);
+        assertEquals(0, loop.unsubmitted());
+
+        // more than the submission queue holds, the rest waits for space
+        IntrusiveQueue<UringCompletion> queue = new IntrusiveQueue<>();
+        for(int i = 0; i < 40; i++) {
+            queue.offer(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        }
+        loop.enqueueAll(queue);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, loop.unsubmitted());
+        assertEquals(46, loop.active());
+
+        // nothing left to submit
+        assertEquals(0, loop.submit());
+        loop.runAll();
+        assertEquals(46, completed.get());
+        loop.deinit();
+        System.out.println("BATCHED ENQUEUE TEST");
+    }
+
+    @Test
+    public void submitOnFullTest() throws UnixException {
+        UringLoop loop = UringLoop.init(new UringConfig().entries(4).cqEntries(64).maxUnqueued(1));
+        int[] eventFds = new int[2];
+        for(int i = 0; i < eventFds.length; i++) {
+            eventFds[i] = Native.eventfd(0, EFD_CLOEXEC);
+        }
+        MemorySegment buf = allocator.allocate(8L * eventFds.length);
+        AtomicInteger completed = new AtomicInteger(0);
+        Callback<UringLoop, UringCompletion> count = (ctx, l, completion, result) -> {
+            assertTrue(result >= 0);
+            completed.incrementAndGet();
+            return false;
+        };
+        // reads that stay in flight, the loop must not block on them while nops wait for sqes
+        for(int i = 0; i < eventFds.length; i++) {
+            loop.enqueue(new UringCompletion()
+                            .operation(new Operation.Read().fd(eventFds[i]).buf(buf.asSlice(8L * i, 8L)).nBytes(8))
+                            .callback(count));
+        }
+        // far more than the submission queue holds, a full queue is submitted and reused right away
+        for(int i = 0; i < 30; i++) {
+            loop.enqueue(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        }
+        assertEquals(0, loop.unqueued());
+        assertEquals(0, loop.rejected());
+        assertEquals(32, loop.active());
+        loop.runOnce();
+        assertEquals(30, completed.get());
+
+        for(int fd : eventFds) {
+            Native.eventfdWrite(fd, 1L);
+        }
+        loop.runAll();
+        assertEquals(32, completed.get());
+        for(int fd : eventFds) {
+            close(fd);
+        }
+        loop.deinit();
+        System.out.println("SUBMIT ON FULL TEST");
+    }
+
+    @Test
+    public void overloadRejectTest() throws UnixException {
+        UringLoop loop = UringLoop.init(new UringConfig().entries(4).maxUnqueued(2));
+        AtomicInteger completed = new AtomicInteger(0);
+        Callback<UringLoop, UringCompletion> count = (ctx, l, completion, result) -> {
+            assertEquals(0, result);
+            completed.incrementAndGet();
+            return false;
+        };
+        // the sq is full and the kernel takes nothing, so two completions are kept for later
+        loop.deferLinked(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        loop.deferLinked(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        assertEquals(2, loop.unqueued());
+        assertEquals(0, loop.rejected());
+
+        // past the limit a whole chain is failed right away, however its callbacks answer
+        StringBuilder rejected = new StringBuilder();
+        Callback<UringLoop, UringCompletion> busy = (ctx, l, completion, result) -> {
+            assertEquals(-EBUSY, result);
+            rejected.append(ctx);
+            return true;
+        };
+        loop.deferLinked(
+                new UringCompletion().operation(new Operation.Nop()).context("a").callback(busy),
+                new UringCompletion().operation(new Operation.Nop()).context("b").callback(busy));
+        assertEquals("ab", rejected.toString());
+        assertEquals(1, loop.rejected());
+        loop.deferLinked(new UringCompletion().operation(new Operation.Nop()).context("c").callback(busy));
+        assertEquals("abc", rejected.toString());
+        assertEquals(2, loop.rejected());
+        assertEquals(2, loop.unqueued());
+
+        // with room in the sq the kept ones run, and so does anything enqueued meanwhile
+        for(int i = 0; i < 4; i++) {
+            loop.enqueue(new UringCompletion().operation(new Operation.Nop()).callback(count));
+        }
+        loop.runAll();
+        assertEquals(6, completed.get());
+        assertEquals(0, loop.unqueued());
+        assertEquals("abc", rejected.toString());
+        loop.deinit();
+        System.out.println("OVERLOAD REJECT TEST");
+    }
+
+    // a listening socket on localhost
+    private static int listener(int backlog) throws UnixException {
+        int serverFd = socket(AF_INET, SOCK_STREAM | SOCK_CLOEXEC, 0);
+        setSockOpt(serverFd, SOL_SOCKET, SO_REUSEADDR, 1);
+        setSockOpt(serverFd, SOL_SOCKET, SO_REUSEPORT, 1);
+        bind(serverFd, localhost, SOCKADDR_IN_SIZE);
+        listen(serverFd, backlog);
+        return serverFd;
+    }
+
+    // a socket connected to the listener, still to be accepted
+    private static int connectClient() throws UnixException {
+        int clientFd = socket(AF_INET, SOCK_STREAM | SOCK_CLOEXEC, 0);
+        connect(clientFd, localhost, SOCKADDR_IN_SIZE);
+        return clientFd;
+    }
+
+    // accepts one pending connection on the loop
+    private static int accept(UringLoop loop, int serverFd) {
+        int acceptedFd = runSingle(loop, new Operation.Accept().fd(serverFd));
+        assertTrue(acceptedFd > 0);
+        return acceptedFd;
+    }
+
+    // enqueues operation alone and returns its result
+    private static int runSingle(UringLoop loop, Operation operation) {
+        AtomicInteger res = new AtomicInteger(Integer.MIN_VALUE);
+        loop.enqueue(new UringCompletion()
+                        .operation(operation)
+                        .callback((ctx, l, completion, result) -> {
+                            res.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+        return res.get();
+    }
+
 }
@@ -0,0 +1,86 @@
+package io.sev.queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class MpscQueueTest {
+
+    private static final class Node extends IntrusiveQueue.Element<Node> {
+        final int producer;
+        final int seq;
+        Node(int producer, int seq) {
+            this.producer = producer;
+            this.seq = seq;
+        }
+    }
+
+    @Test
+    public void fifoTest() {
+        MpscQueue<Node> queue = new MpscQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for(int round = 0; round < 3; round++) {
+            for(int i = 0; i < 10; i++) {
+                queue.offer(new Node(0, i));
+            }
+            assertFalse(queue.isEmpty());
+            for(int i = 0; i < 10; i++) {
+                assertEquals(i, queue.poll().seq);
+            }
+            assertTrue(queue.isEmpty());
+            assertNull(queue.poll());
+        }
+        // polled elements can move on to an IntrusiveQueue
+        IntrusiveQueue<Node> local = new IntrusiveQueue<>();
+        queue.offer(new Node(0, 1));
+        queue.offer(new Node(0, 2));
+        local.offer(queue.poll());
+        local.offer(queue.poll());
+        assertEquals(2, local.size());
+        assertEquals(1, local.poll().seq);
+        assertEquals(2, local.poll().seq);
+        System.out.println("MPSC FIFO TEST");
+    }
+
+    @Test
+    public void producersTest() throws InterruptedException {
+        MpscQueue<Node> queue = new MpscQueue<>();
+        int producers = 8;
+        int perProducer = 100_000;
+        List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for(int i = 0; i < perProducer; i++) {
+                    queue.offer(new Node(producer, i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        int[] next = new int[producers];
+        int received = 0;
+        while(received < producers * perProducer) {
+            Node node = queue.poll();
+            if(node == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // fifo per producer
+            assertEquals(next[node.producer], node.seq);
+            next[node.producer]++;
+            received++;
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        System.out.println("MPSC PRODUCERS TEST");
+    }
+
+}
@@ -194,6 +194,22 @@ public class IoUringTest {
         System.out.println("100 NOP TEST");
     }
 
+    @Test
+    public void uringSqFullTest() throws UnixException {
+        IoUring ring = IoUring.init(arena);
+        for(int i = 0; i < 512; i++) {
+            long sqe = ring.getSqe();
+            assertNotEquals(0L, sqe);
+            IoUring.prepNop(sqe);
+            IoUring.sqeSetData64(sqe, (long) i);
+        }
+        assertEquals(0L, ring.getSqe());
+        assertEquals(512, ring.submit());
+        assertNotEquals(0L, ring.getSqe());
+        ring.queueExit();
+        System.out.println("SQ FULL TEST");
+    }
+
     @Test
     public void uringTimeoutTest() throws UnixException {
         IoUring ring = IoUring.init(arena);
@@ -0,0 +1,129 @@
+package io.sev.wal;
+
+import static io.sev.util.path.PathUtil.path;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+import io.sev.Native;
+import io.sev.loop.Operation;
+import io.sev.loop.uring.UringCompletion;
+import io.sev.loop.uring.UringLoop;
+import io.sev.util.unix.UnixException;
+
+public class WriteAheadLogTest {
+
+    private static SegmentAllocator allocator = Native.callocator();
+
+    @Test
+    public void groupCommitTest() throws UnixException, IOException {
+        // tmpfs rejects O_DIRECT, the working directory is on a real filesystem
+        Path dir = Files.createTempDirectory(Path.of(System.getProperty("user.dir")), "wal");
+        Path file = dir.resolve("log");
+        UringLoop loop = UringLoop.init();
+
+        AtomicInteger fd = new AtomicInteger(-1);
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.OpenAt().path(path(file, allocator)).flags(WriteAheadLog.OPEN_FLAGS).mode(0600))
+                        .callback((ctx, l, completion, result) -> {
+                            fd.set(result);
+                            return false;
+                        }));
+        loop.runAll();
+        assertTrue(fd.get() >= 0, "open failed: " + fd.get());
+
+        // small buffers, so records cross buffers and commits are capped at 4 of them
+        WriteAheadLog wal = new WriteAheadLog(loop, fd.get(), 0L, 4096, 4 * 4096, 4);
+        int n = 2000;
+        List<byte[]> records = new ArrayList<>();
+        List<Long> lsns = new ArrayList<>();
+        List<Long> durable = new ArrayList<>();
+        MemorySegment record = allocator.allocate(4096L);
+        WriteAheadLog.DurableCallback callback = (ctx, l, lsn, result) -> {
+            assertEquals(0, result);
+            durable.add(lsn);
+        };
+        // appends arrive in bursts of 50, the next burst from the last durable callback of the previous one
+        WriteAheadLog.DurableCallback burst = new WriteAheadLog.DurableCallback() {
+            @Override
+            public void invoke(Object context, UringLoop l, long lsn, int result) {
+                if(lsn >= 0L) {
+                    callback.invoke(context, l, lsn, result);
+                }
+                for(int i = 0; i < 50 && records.size() < n; i++) {
+                    int size = 1 + (records.size() * 37) % 3000;
+                    byte[] bytes = new byte[size];
+                    for(int j = 0; j < size; j++) {
+                        bytes[j] = (byte) (records.size() + j);
+                    }
+                    MemorySegment.copy(bytes, 0, record, JAVA_BYTE, 0L, size);
+                    records.add(bytes);
+                    lsns.add(wal.append(record.asSlice(0L, size), null, i == 49 ? this : callback));
+                }
+            }
+        };
+        burst.invoke(null, loop, -1L, 0);
+        loop.runAll();
+
+        assertEquals(n, records.size());
+        assertEquals(0, wal.pending());
+        assertEquals(lsns, durable);
+        assertTrue(wal.commits() < n);
+        assertEquals(wal.end(), lsns.get(n - 1) + WriteAheadLog.HEADER_SIZE + records.get(n - 1).length);
+
+        // what is on disk is the records back to back, then zero padding
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.nativeOrder());
+        assertEquals(0, log.limit() % 4096);
+        CRC32C crc = new CRC32C();
+        for(int i = 0; i < n; i++) {
+            assertEquals((long) lsns.get(i), log.position());
+            int length = log.getInt();
+            int checksum = log.getInt();
+            byte[] bytes = new byte[length];
+            log.get(bytes);
+            assertArrayEquals(records.get(i), bytes);
+            crc.reset();
+            crc.update(bytes);
+            assertEquals((int) crc.getValue(), checksum);
+        }
+        if(log.remaining() >= 4) {
+            assertEquals(0, log.getInt());
+        }
+
+        wal.deinit();
+        loop.enqueue(new UringCompletion()
+                        .operation(new Operation.Close(fd.get()))
+                        .callback((ctx, l, completion, result) -> false));
+        loop.runAll();
+        loop.deinit();
+        Files.delete(file);
+        Files.delete(dir);
+        System.out.println("GROUP COMMIT TEST");
+    }
+
+    @Test
+    public void oversizedRecordTest() throws UnixException {
+        UringLoop loop = UringLoop.init();
+        WriteAheadLog wal = new WriteAheadLog(loop, -1, 0L, 4096, 2 * 4096, 1);
+        MemorySegment record = allocator.allocate(4096L);
+        assertThrows(IllegalArgumentException.class, () -> wal.append(record, null, (ctx, l, lsn, result) -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new WriteAheadLog(loop, -1, 100L, 4096, 2 * 4096, 1));
+        wal.deinit();
+        loop.deinit();
+        System.out.println("OVERSIZED RECORD TEST");
+    }
+
+}